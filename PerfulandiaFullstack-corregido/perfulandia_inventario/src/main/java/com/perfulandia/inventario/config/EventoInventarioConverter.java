@@ -0,0 +1,140 @@
+package com.perfulandia.inventario.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.inventario.model.EventoInventario;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Serializa EventoInventario en binario compacto (varints) con cabecera de versión.
+// Acepta también JSON y el formato antiguo "productoId:cantidad"; el resto se delega en SimpleMessageConverter.
+public class EventoInventarioConverter implements MessageConverter {
+    public static final String CONTENT_TYPE_BINARIO = "application/x-perfulandia-inventario";
+    public static final String HEADER_VERSION = "x-evento-version";
+    // productoId y cantidad, un byte de varint cada uno como mínimo
+    private static final int MIN_BYTES_LINEA = 2;
+
+    private final ObjectMapper objectMapper;
+    private final boolean binario;
+    private final SimpleMessageConverter simple = new SimpleMessageConverter();
+
+    public EventoInventarioConverter(ObjectMapper objectMapper, boolean binario) {
+        this.objectMapper = objectMapper;
+        this.binario = binario;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties properties) {
+        if (!(object instanceof EventoInventario evento)) {
+            return simple.toMessage(object, properties);
+        }
+        properties.setHeader(HEADER_VERSION, EventoInventario.VERSION);
+        if (!binario) {
+            try {
+                properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+                return new Message(objectMapper.writeValueAsBytes(evento), properties);
+            } catch (IOException e) {
+                throw new MessageConversionException("No se pudo serializar el evento a JSON", e);
+            }
+        }
+        properties.setContentType(CONTENT_TYPE_BINARIO);
+        return new Message(codificar(evento), properties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        String contentType = properties.getContentType();
+        byte[] cuerpo = message.getBody();
+        if (CONTENT_TYPE_BINARIO.equals(contentType)) {
+            Object version = properties.getHeader(HEADER_VERSION);
+            if (version == null || ((Number) version).intValue() != EventoInventario.VERSION) {
+                throw new MessageConversionException("Versión de evento de inventario no soportada: " + version);
+            }
+            return decodificar(cuerpo);
+        }
+        if (contentType != null && contentType.startsWith(MessageProperties.CONTENT_TYPE_JSON)) {
+            try {
+                return objectMapper.readValue(cuerpo, EventoInventario.class);
+            } catch (IOException e) {
+                throw new MessageConversionException("JSON de evento de inventario inválido", e);
+            }
+        }
+        if (MessageProperties.CONTENT_TYPE_TEXT_PLAIN.equals(contentType)) {
+            // Formato anterior: "productoId:cantidad"
+            String texto = new String(cuerpo, StandardCharsets.UTF_8);
+            int separador = texto.indexOf(':');
+            if (separador > 0) {
+                long productoId = Long.parseLong(texto, 0, separador, 10);
+                int cantidad = Integer.parseInt(texto, separador + 1, texto.length(), 10);
+                return new EventoInventario(0, List.of(new EventoInventario.Linea(productoId, cantidad)));
+            }
+        }
+        return simple.fromMessage(message);
+    }
+
+    // [pedidoId varint][n varint] n x ([productoId varint][cantidad zigzag varint])
+    static byte[] codificar(EventoInventario evento) {
+        List<EventoInventario.Linea> lineas = evento.lineas();
+        byte[] buffer = new byte[20 + lineas.size() * 15];
+        int pos = escribirVarLong(buffer, 0, evento.pedidoId());
+        pos = escribirVarLong(buffer, pos, lineas.size());
+        for (EventoInventario.Linea linea : lineas) {
+            pos = escribirVarLong(buffer, pos, linea.productoId());
+            pos = escribirVarLong(buffer, pos, ((linea.cantidad() << 1) ^ (linea.cantidad() >> 31)) & 0xFFFFFFFFL);
+        }
+        byte[] resultado = new byte[pos];
+        System.arraycopy(buffer, 0, resultado, 0, pos);
+        return resultado;
+    }
+
+    static EventoInventario decodificar(byte[] cuerpo) {
+        int[] pos = {0};
+        long pedidoId = leerVarLong(cuerpo, pos);
+        long n = leerVarLong(cuerpo, pos);
+        // Cada línea ocupa al menos MIN_BYTES_LINEA: un n mayor que lo que queda es un cuerpo corrupto
+        if (n < 0 || n > (cuerpo.length - pos[0]) / MIN_BYTES_LINEA) {
+            throw new MessageConversionException("Evento de inventario binario con " + n + " líneas y "
+                    + (cuerpo.length - pos[0]) + " bytes restantes");
+        }
+        List<EventoInventario.Linea> lineas = new ArrayList<>((int) n);
+        for (int i = 0; i < n; i++) {
+            long productoId = leerVarLong(cuerpo, pos);
+            int zigzag = (int) leerVarLong(cuerpo, pos);
+            lineas.add(new EventoInventario.Linea(productoId, (zigzag >>> 1) ^ -(zigzag & 1)));
+        }
+        return new EventoInventario(pedidoId, lineas);
+    }
+
+    private static int escribirVarLong(byte[] buffer, int pos, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        buffer[pos++] = (byte) valor;
+        return pos;
+    }
+
+    private static long leerVarLong(byte[] buffer, int[] pos) {
+        long valor = 0;
+        int desplazamiento = 0;
+        while (true) {
+            if (pos[0] >= buffer.length || desplazamiento > 63) {
+                throw new MessageConversionException("Evento de inventario binario truncado o corrupto");
+            }
+            byte b = buffer[pos[0]++];
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+            desplazamiento += 7;
+        }
+    }
+}
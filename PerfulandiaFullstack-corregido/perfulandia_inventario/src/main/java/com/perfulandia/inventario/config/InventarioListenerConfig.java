@@ -0,0 +1,52 @@
+package com.perfulandia.inventario.config;
+
+import com.perfulandia.inventario.service.InventarioListener;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+// Registra un contenedor (un hilo) por partición, más uno para la cola anterior sin particionar
+@Configuration
+public class InventarioListenerConfig implements RabbitListenerConfigurer {
+
+    private final InventarioListener inventarioListener;
+    private final SimpleRabbitListenerContainerFactory inventarioBatchFactory;
+    private final int particiones;
+
+    public InventarioListenerConfig(InventarioListener inventarioListener,
+                                    SimpleRabbitListenerContainerFactory inventarioBatchFactory,
+                                    @Value("${inventario.particiones:8}") int particiones) {
+        this.inventarioListener = inventarioListener;
+        this.inventarioBatchFactory = inventarioBatchFactory;
+        this.particiones = particiones;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        for (int i = 0; i < particiones; i++) {
+            registrar.registerEndpoint(endpoint(RabbitMQConfig.INVENTARIO_QUEUE_PREFIX + i), inventarioBatchFactory);
+        }
+        registrar.registerEndpoint(endpoint(RabbitMQConfig.QUEUE), inventarioBatchFactory);
+    }
+
+    private SimpleRabbitListenerEndpoint endpoint(String cola) {
+        SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+        endpoint.setId("inventario-" + cola);
+        endpoint.setQueueNames(cola);
+        endpoint.setMessageListener((ChannelAwareBatchMessageListener) (mensajes, channel) -> {
+            try {
+                inventarioListener.recibirMensajes(mensajes, channel);
+            } catch (IOException e) {
+                throw new AmqpIOException(e);
+            }
+        });
+        return endpoint;
+    }
+}
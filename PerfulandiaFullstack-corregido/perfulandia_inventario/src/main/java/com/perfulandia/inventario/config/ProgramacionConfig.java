@@ -0,0 +1,24 @@
+package com.perfulandia.inventario.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// Las tareas periódicas (@Scheduled) comparten este programador gestionado por Spring. Las de cada
+// bean se cancelan al destruirlo, antes que el DataSource del que depende, y el cierre espera a la que esté en curso.
+@Configuration
+@EnableScheduling
+public class ProgramacionConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${inventario.programador.hilos:4}") int hilos) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(hilos);
+        scheduler.setThreadNamePrefix("inventario-programador-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
@@ -1,15 +1,84 @@
 package com.perfulandia.inventario.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
+    // Cola única anterior (no durable): se sigue consumiendo para vaciar los mensajes pendientes
     public static final String QUEUE = "pedido-inventario";
 
+    // Una cola durable por partición de productoId; deben coincidir con perfulandia_pedido
+    public static final String INVENTARIO_EXCHANGE = "pedido-inventario.exchange";
+    public static final String INVENTARIO_QUEUE_PREFIX = "pedido-inventario-";
+    // Mensajes de inventario ilegibles o de versión desconocida, para revisarlos a mano
+    public static final String INVENTARIO_DLQ = "pedido-inventario.dlq";
+
     @Bean
     public Queue queue() {
         return new Queue(QUEUE, false);
     }
+
+    @Bean
+    public Declarables inventarioParticiones(@Value("${inventario.particiones:8}") int particiones) {
+        DirectExchange exchange = new DirectExchange(INVENTARIO_EXCHANGE, true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        declarables.add(QueueBuilder.durable(INVENTARIO_DLQ).build());
+        for (int i = 0; i < particiones; i++) {
+            // Los argumentos (dead letter hacia pedido-inventario.dlq) deben coincidir con perfulandia_pedido
+            Queue queue = QueueBuilder.durable(INVENTARIO_QUEUE_PREFIX + i)
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(INVENTARIO_DLQ)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(String.valueOf(i)));
+        }
+        return new Declarables(declarables);
+    }
+
+    // Entrega los mensajes en lotes: hasta batch-size mensajes o lo que llegue en receive-timeout-ms.
+    // Ack manual: InventarioListener confirma o rechaza cada mensaje del lote por separado, y lo que
+    // rechace el contenedor va a la dead letter en lugar de volver a la cola. En la cola anterior sin
+    // particionar (sin dead letter) un mensaje rechazado se pierde, como hasta ahora.
+    @Bean
+    public SimpleRabbitListenerContainerFactory inventarioBatchFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${inventario.consumer.batch-size:500}") int batchSize,
+            @Value("${inventario.consumer.receive-timeout-ms:50}") long receiveTimeoutMs,
+            @Value("${inventario.consumer.prefetch:500}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setDefaultRequeueRejected(false);
+        // Un único consumidor por contenedor: el orden dentro de cada partición se conserva
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        return factory;
+    }
+
+    // Lee EventoInventario en binario (cabecera de versión), JSON o el formato antiguo "productoId:cantidad"
+    @Bean
+    public EventoInventarioConverter eventoInventarioConverter(ObjectMapper objectMapper) {
+        return new EventoInventarioConverter(objectMapper, true);
+    }
 }
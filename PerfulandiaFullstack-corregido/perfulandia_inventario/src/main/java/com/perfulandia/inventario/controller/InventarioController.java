@@ -1,9 +1,19 @@
 package com.perfulandia.inventario.controller;
 
+import com.perfulandia.inventario.model.AjusteLinea;
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.model.AuditoriaStock;
 import com.perfulandia.inventario.model.Inventario;
+import com.perfulandia.inventario.model.MovimientoStock;
+import com.perfulandia.inventario.model.ResultadoAjustes;
+import com.perfulandia.inventario.service.ConflictoStockException;
 import com.perfulandia.inventario.service.InventarioService;
+import com.perfulandia.inventario.service.MovimientoService;
+import com.perfulandia.inventario.service.StockEventos;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.lang.reflect.Field;
 import java.util.List;
@@ -13,10 +23,17 @@ import org.springframework.util.ReflectionUtils;
 @RestController
 @RequestMapping("/api/inventario")
 public class InventarioController {
+    private static final int MAX_PRODUCTOS = 1000;
+
     private final InventarioService service;
+    private final StockEventos stockEventos;
+    private final MovimientoService movimientoService;
 
-    public InventarioController(InventarioService service) {
+    public InventarioController(InventarioService service, StockEventos stockEventos,
+                                MovimientoService movimientoService) {
         this.service = service;
+        this.stockEventos = stockEventos;
+        this.movimientoService = movimientoService;
     }
 
     @GetMapping
@@ -24,12 +41,59 @@ public class InventarioController {
         return service.findAll();
     }
 
+    // Consulta en bloque: GET /api/inventario?productoIds=1,2,3 (un solo SELECT ... IN)
+    @GetMapping(params = "productoIds")
+    public ResponseEntity<List<Inventario>> getByProductoIds(@RequestParam List<Long> productoIds) {
+        if (productoIds.isEmpty() || productoIds.size() > MAX_PRODUCTOS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.findByProductoIds(productoIds));
+    }
+
+    // Ajustes en bloque, todo o nada: 200 con el inventario resultante, 409 con los productos rechazados
+    @PostMapping("/ajustes")
+    public ResponseEntity<?> ajustarLote(@RequestBody List<AjusteLinea> lineas) {
+        if (lineas.isEmpty() || lineas.size() > MAX_PRODUCTOS
+                || lineas.stream().anyMatch(l -> l.productoId() == null)) {
+            return ResponseEntity.badRequest().body("Entre 1 y " + MAX_PRODUCTOS + " líneas, todas con productoId");
+        }
+        ResultadoAjustes resultado = service.ajustarLote(lineas);
+        return resultado.aplicado() ? ResponseEntity.ok(resultado.inventarios()) : ResponseEntity.status(409).body(resultado);
+    }
+
+    // Cambios de stock por SSE (evento "stock" con {productoId: cantidad}); sin productoIds, todos los productos
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) List<Long> productoIds) {
+        if (productoIds != null && productoIds.size() > MAX_PRODUCTOS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(stockEventos.suscribir(productoIds != null ? productoIds : List.of()));
+    }
+
     @GetMapping("/{productoId}")
     public ResponseEntity<Inventario> getByProductoId(@PathVariable Long productoId) {
         Inventario inv = service.findByProductoId(productoId);
         return inv != null ? ResponseEntity.ok(inv) : ResponseEntity.notFound().build();
     }
 
+    // Movimientos del producto con id > after, en orden (paginación por cursor)
+    @GetMapping("/{productoId}/movimientos")
+    public List<MovimientoStock> movimientos(@PathVariable Long productoId,
+                                             @RequestParam(defaultValue = "0") long after,
+                                             @RequestParam(defaultValue = "100") int limit) {
+        return movimientoService.movimientos(productoId, after, Math.max(1, Math.min(limit, MAX_PRODUCTOS)));
+    }
+
+    // Cantidad reconstruida desde el último punto de control frente a la vigente
+    @GetMapping("/{productoId}/auditoria")
+    public ResponseEntity<AuditoriaStock> auditoria(@PathVariable Long productoId) {
+        Inventario inv = service.findByProductoId(productoId);
+        if (inv == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(movimientoService.auditar(productoId, inv.getCantidadDisponible()));
+    }
+
     @PostMapping
     public Inventario create(@RequestBody Inventario inventario) {
         return service.save(inventario);
@@ -37,25 +101,40 @@ public class InventarioController {
 
     @PutMapping("/{productoId}/aumentar")
     public ResponseEntity<Inventario> aumentar(@PathVariable Long productoId, @RequestParam int cantidad) {
-        Inventario inv = service.ajustarCantidad(productoId, cantidad);
-        return inv != null ? ResponseEntity.ok(inv) : ResponseEntity.notFound().build();
+        return ajustar(productoId, cantidad);
     }
 
     @PutMapping("/{productoId}/reducir")
     public ResponseEntity<Inventario> reducir(@PathVariable Long productoId, @RequestParam int cantidad) {
-        Inventario inv = service.ajustarCantidad(productoId, -cantidad);
-        return inv != null ? ResponseEntity.ok(inv) : ResponseEntity.notFound().build();
+        return ajustar(productoId, -cantidad);
+    }
+
+    // 404 si el producto no existe, 409 si el stock no alcanza para el ajuste. La respuesta es la
+    // fila completa; si se aplicó, con la cantidad que dejó el ajuste y no la de una escritura posterior
+    private ResponseEntity<Inventario> ajustar(Long productoId, int cantidad) {
+        AjusteStock ajuste = service.ajustarCantidad(productoId, cantidad);
+        Inventario inv = service.findByProductoId(productoId);
+        if (inv == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (ajuste.aplicado()) {
+            inv.setCantidadDisponible(ajuste.cantidadDisponible());
+            return ResponseEntity.ok(inv);
+        }
+        return ResponseEntity.status(409).body(inv);
     }
 
+    // 409 si el producto tiene ubicaciones: su stock se fija por almacén
     @PutMapping("/{productoId}")
     public ResponseEntity<Inventario> update(@PathVariable Long productoId, @RequestBody Inventario data) {
         Inventario inv = service.findByProductoId(productoId);
-        if (inv != null) {
-            inv.setCantidadDisponible(data.getCantidadDisponible());
-            inv.setUbicacion(data.getUbicacion());
-            return ResponseEntity.ok(service.save(inv));
+        if (inv == null) {
+            return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.notFound().build();
+        Integer leida = inv.getCantidadDisponible();
+        inv.setCantidadDisponible(data.getCantidadDisponible());
+        inv.setUbicacion(data.getUbicacion());
+        return ResponseEntity.ok(service.save(inv, leida));
     }
 
     @PatchMapping("/{id}")
@@ -64,6 +143,7 @@ public class InventarioController {
         if (inventario == null) {
             return ResponseEntity.notFound().build();
         }
+        Integer leida = inventario.getCantidadDisponible();
         updates.forEach((key, value) -> {
             Field field = ReflectionUtils.findField(Inventario.class, key);
             if (field != null) {
@@ -71,7 +151,13 @@ public class InventarioController {
                 ReflectionUtils.setField(field, inventario, value);
             }
         });
-        return ResponseEntity.ok(service.save(inventario));
+        return ResponseEntity.ok(service.save(inventario, leida));
+    }
+
+    // El modo de stock del producto no admite el cambio (ubicaciones, buckets): reintentar no sirve
+    @ExceptionHandler(ConflictoStockException.class)
+    public ResponseEntity<String> conflictoStock(ConflictoStockException e) {
+        return ResponseEntity.status(409).body(e.getMessage());
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,66 @@
+package com.perfulandia.inventario.controller;
+
+import com.perfulandia.inventario.model.Inventario;
+import com.perfulandia.inventario.model.Reserva;
+import com.perfulandia.inventario.service.ConflictoStockException;
+import com.perfulandia.inventario.service.InventarioService;
+import com.perfulandia.inventario.service.ReservaService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/inventario/reservas")
+public class ReservaController {
+    private final ReservaService service;
+    private final InventarioService inventarioService;
+
+    public ReservaController(ReservaService service, InventarioService inventarioService) {
+        this.service = service;
+        this.inventarioService = inventarioService;
+    }
+
+    // 201 con la reserva; 404 si el producto no existe, 409 si el stock no alcanza
+    @PostMapping
+    public ResponseEntity<?> reservar(@RequestBody Reserva reserva,
+                                      @RequestParam(required = false) Integer ttlSegundos) {
+        if (reserva.getProductoId() == null || reserva.getCantidad() == null || reserva.getCantidad() <= 0) {
+            return ResponseEntity.badRequest().body("productoId y cantidad (> 0) son obligatorios");
+        }
+        Reserva nueva = service.reservar(reserva.getProductoId(), reserva.getCantidad(), ttlSegundos);
+        if (nueva != null) {
+            return ResponseEntity.status(201).body(nueva);
+        }
+        Inventario inventario = inventarioService.findByProductoId(reserva.getProductoId());
+        return inventario == null ? ResponseEntity.notFound().build() : ResponseEntity.status(409).body(inventario);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Reserva> getById(@PathVariable Long id) {
+        Reserva reserva = service.findById(id);
+        return reserva != null ? ResponseEntity.ok(reserva) : ResponseEntity.notFound().build();
+    }
+
+    @PutMapping("/{id}/confirmar")
+    public ResponseEntity<Reserva> confirmar(@PathVariable Long id) {
+        return resultado(service.confirmar(id), Reserva.Estado.CONFIRMADA);
+    }
+
+    @PutMapping("/{id}/liberar")
+    public ResponseEntity<Reserva> liberar(@PathVariable Long id) {
+        return resultado(service.liberar(id), Reserva.Estado.LIBERADA);
+    }
+
+    // El descuento o la devolución chocan con el modo de stock del producto
+    @ExceptionHandler(ConflictoStockException.class)
+    public ResponseEntity<String> conflictoStock(ConflictoStockException e) {
+        return ResponseEntity.status(409).body(e.getMessage());
+    }
+
+    // 409 si la reserva ya estaba cerrada (confirmada, liberada o expirada) con otro estado
+    private ResponseEntity<Reserva> resultado(Reserva reserva, Reserva.Estado esperado) {
+        if (reserva == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return reserva.getEstado() == esperado ? ResponseEntity.ok(reserva) : ResponseEntity.status(409).body(reserva);
+    }
+}
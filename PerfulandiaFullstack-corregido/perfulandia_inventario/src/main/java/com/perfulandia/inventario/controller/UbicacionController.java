@@ -0,0 +1,80 @@
+package com.perfulandia.inventario.controller;
+
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.model.Almacen;
+import com.perfulandia.inventario.model.StockUbicacion;
+import com.perfulandia.inventario.model.UbicacionCercana;
+import com.perfulandia.inventario.service.ConflictoStockException;
+import com.perfulandia.inventario.service.InventarioService;
+import com.perfulandia.inventario.service.UbicacionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inventario")
+public class UbicacionController {
+    private final UbicacionService ubicacionService;
+    private final InventarioService inventarioService;
+
+    public UbicacionController(UbicacionService ubicacionService, InventarioService inventarioService) {
+        this.ubicacionService = ubicacionService;
+        this.inventarioService = inventarioService;
+    }
+
+    @GetMapping("/almacenes")
+    public List<Almacen> getAlmacenes() {
+        return ubicacionService.almacenes();
+    }
+
+    @PostMapping("/almacenes")
+    public Almacen createAlmacen(@RequestBody Almacen almacen) {
+        return ubicacionService.guardarAlmacen(almacen);
+    }
+
+    @GetMapping("/{productoId}/ubicaciones")
+    public List<StockUbicacion> getUbicaciones(@PathVariable Long productoId) {
+        return ubicacionService.ubicaciones(productoId);
+    }
+
+    // Fija la cantidad del producto en un almacén; el total del producto se recalcula en la misma transacción.
+    // 409 si el stock del producto está repartido en buckets
+    @PutMapping("/{productoId}/ubicaciones/{almacen}")
+    public ResponseEntity<List<StockUbicacion>> fijar(@PathVariable Long productoId, @PathVariable String almacen,
+                                                      @RequestParam int cantidad) {
+        if (cantidad < 0 || !ubicacionService.existeAlmacen(almacen)) {
+            return ResponseEntity.badRequest().build();
+        }
+        AjusteStock ajuste = inventarioService.fijarUbicacion(productoId, almacen, cantidad);
+        return ajuste != null ? ResponseEntity.ok(ubicacionService.ubicaciones(productoId)) : ResponseEntity.notFound().build();
+    }
+
+    // 404 si el producto no está en ese almacén, 409 si el stock del almacén no alcanza
+    @PutMapping("/{productoId}/ubicaciones/{almacen}/ajustar")
+    public ResponseEntity<List<StockUbicacion>> ajustar(@PathVariable Long productoId, @PathVariable String almacen,
+                                                        @RequestParam int cantidad) {
+        List<StockUbicacion> ubicaciones = ubicacionService.ubicaciones(productoId);
+        if (ubicaciones.stream().noneMatch(u -> u.getAlmacen().equals(almacen))) {
+            return ResponseEntity.notFound().build();
+        }
+        AjusteStock ajuste = inventarioService.ajustarUbicacion(productoId, almacen, cantidad);
+        List<StockUbicacion> actuales = ubicacionService.ubicaciones(productoId);
+        return ajuste.aplicado() ? ResponseEntity.ok(actuales) : ResponseEntity.status(409).body(actuales);
+    }
+
+    // Buckets frente a ubicaciones, o un total que no cuadra con ellas
+    @ExceptionHandler(ConflictoStockException.class)
+    public ResponseEntity<String> conflictoStock(ConflictoStockException e) {
+        return ResponseEntity.status(409).body(e.getMessage());
+    }
+
+    // Almacén más cercano a (lat, lon) con al menos `cantidad` unidades, desde el índice en memoria
+    @GetMapping("/{productoId}/ubicaciones/cercana")
+    public ResponseEntity<UbicacionCercana> masCercana(@PathVariable Long productoId,
+                                                       @RequestParam double lat, @RequestParam double lon,
+                                                       @RequestParam(defaultValue = "1") int cantidad) {
+        UbicacionCercana cercana = ubicacionService.masCercana(productoId, lat, lon, cantidad);
+        return cercana != null ? ResponseEntity.ok(cercana) : ResponseEntity.notFound().build();
+    }
+}
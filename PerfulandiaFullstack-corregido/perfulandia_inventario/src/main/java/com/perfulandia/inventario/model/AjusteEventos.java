@@ -0,0 +1,9 @@
+package com.perfulandia.inventario.model;
+
+import java.util.List;
+
+// Resultado de aplicar un lote de eventos de pedido: productos (ordenados) con su delta total y las
+// filas afectadas, las líneas de los eventos aplicados y cuántos eventos se saltaron por repetidos
+public record AjusteEventos(long[] productos, int[] totales, int[] filas,
+                            List<EventoInventario.Linea> lineas, int duplicados) {
+}
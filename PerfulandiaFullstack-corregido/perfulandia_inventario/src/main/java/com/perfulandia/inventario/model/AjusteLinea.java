@@ -0,0 +1,5 @@
+package com.perfulandia.inventario.model;
+
+// Una línea de POST /api/inventario/ajustes: delta positivo para reponer, negativo para descontar
+public record AjusteLinea(Long productoId, int cantidad) {
+}
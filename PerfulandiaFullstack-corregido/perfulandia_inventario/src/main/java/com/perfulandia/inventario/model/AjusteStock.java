@@ -0,0 +1,8 @@
+package com.perfulandia.inventario.model;
+
+// Resultado de un ajuste atómico: filas afectadas y cantidad resultante (null si no se aplicó)
+public record AjusteStock(int filas, Integer cantidadDisponible) {
+    public boolean aplicado() {
+        return filas > 0;
+    }
+}
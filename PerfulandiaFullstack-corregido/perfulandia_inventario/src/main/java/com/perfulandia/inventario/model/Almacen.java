@@ -0,0 +1,27 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "almacen")
+public class Almacen {
+    @Id
+    @Column(length = 40)
+    private String codigo;
+    private String nombre;
+    private double latitud;
+    private double longitud;
+
+    // Getters y setters
+    public String getCodigo() { return codigo; }
+    public void setCodigo(String codigo) { this.codigo = codigo; }
+
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+
+    public double getLatitud() { return latitud; }
+    public void setLatitud(double latitud) { this.latitud = latitud; }
+
+    public double getLongitud() { return longitud; }
+    public void setLongitud(double longitud) { this.longitud = longitud; }
+}
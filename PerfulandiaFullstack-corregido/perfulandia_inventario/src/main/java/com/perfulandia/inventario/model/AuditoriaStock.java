@@ -0,0 +1,10 @@
+package com.perfulandia.inventario.model;
+
+// Cantidad reconstruida desde el último punto de control más los movimientos posteriores,
+// comparada con la cantidad vigente del producto
+public record AuditoriaStock(Long productoId, Long hastaMovimientoId, int cantidadPuntoControl,
+                             int movimientosPosteriores, int cantidadReconstruida, Integer cantidadActual) {
+    public boolean consistente() {
+        return cantidadActual != null && cantidadActual == cantidadReconstruida;
+    }
+}
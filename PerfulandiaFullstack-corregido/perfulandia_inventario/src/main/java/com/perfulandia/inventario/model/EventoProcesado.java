@@ -0,0 +1,34 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+// Clave (messageId) de un evento de pedido ya aplicado. Se inserta en la misma transacción que el
+// ajuste de stock, así una reentrega del mismo evento se reconoce y se salta.
+@Entity
+@Table(name = "inventario_evento_procesado",
+        indexes = {@Index(name = "idx_evento_procesado_lote", columnList = "lote"),
+                @Index(name = "idx_evento_procesado_fecha", columnList = "procesado")})
+public class EventoProcesado {
+    @Id
+    @Column(length = 64)
+    private String clave;
+
+    // Identifica el lote del listener que la insertó: las que no son de este lote eran duplicadas
+    @Column(nullable = false)
+    private long lote;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date procesado;
+
+    // Getters y setters
+    public String getClave() { return clave; }
+    public void setClave(String clave) { this.clave = clave; }
+
+    public long getLote() { return lote; }
+    public void setLote(long lote) { this.lote = lote; }
+
+    public Date getProcesado() { return procesado; }
+    public void setProcesado(Date procesado) { this.procesado = procesado; }
+}
@@ -14,6 +14,12 @@ public class Inventario {
     private Integer cantidadDisponible;
     private String ubicacion;
 
+    // El stock está repartido en inventario_ubicacion y cantidadDisponible es su suma. Solo lo cambia
+    // InventarioService con SQL, bloqueando la fila; JPA nunca lo escribe y no sale en el JSON.
+    @Column(name = "con_ubicaciones", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "boolean not null default false")
+    private boolean conUbicaciones;
+
     // Getters y setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
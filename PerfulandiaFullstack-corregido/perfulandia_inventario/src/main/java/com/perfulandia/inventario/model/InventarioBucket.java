@@ -0,0 +1,57 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// Sub-fila de stock de un producto fraccionado: el stock total es la suma de sus buckets
+@Entity
+@Table(name = "inventario_bucket")
+@IdClass(InventarioBucket.Clave.class)
+public class InventarioBucket {
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Id
+    private Integer bucket;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    // Getters y setters
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Integer getBucket() { return bucket; }
+    public void setBucket(Integer bucket) { this.bucket = bucket; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+
+    public static class Clave implements Serializable {
+        private Long productoId;
+        private Integer bucket;
+
+        public Clave() {
+        }
+
+        public Clave(Long productoId, Integer bucket) {
+            this.productoId = productoId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Clave otra)) return false;
+            return Objects.equals(productoId, otra.productoId) && Objects.equals(bucket, otra.bucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productoId, bucket);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+// Movimiento del libro de stock (solo se inserta). AJUSTE suma delta; FIJACION deja la cantidad absoluta.
+@Entity
+@Table(name = "inventario_movimiento", indexes = @Index(name = "idx_movimiento_producto", columnList = "producto_id, id"))
+public class MovimientoStock {
+    public enum Tipo { AJUSTE, FIJACION }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Tipo tipo;
+
+    private int delta;
+
+    // Cantidad resultante si se conoce (los ajustes en batch no la devuelven)
+    private Integer cantidad;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creado;
+
+    // Getters y setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Tipo getTipo() { return tipo; }
+    public void setTipo(Tipo tipo) { this.tipo = tipo; }
+
+    public int getDelta() { return delta; }
+    public void setDelta(int delta) { this.delta = delta; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+
+    public Date getCreado() { return creado; }
+    public void setCreado(Date creado) { this.creado = creado; }
+}
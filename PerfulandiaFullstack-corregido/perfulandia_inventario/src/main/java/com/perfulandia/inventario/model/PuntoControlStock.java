@@ -0,0 +1,49 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+// Cantidad de un producto tras aplicar todos los movimientos con id <= hastaMovimientoId.
+// La compactación los crea y después borra esos movimientos.
+@Entity
+@Table(name = "inventario_checkpoint",
+        indexes = @Index(name = "idx_checkpoint_producto", columnList = "producto_id, hasta_movimiento_id"))
+public class PuntoControlStock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(name = "hasta_movimiento_id", nullable = false)
+    private Long hastaMovimientoId;
+
+    private int cantidad;
+
+    // Movimientos plegados en este punto de control
+    private int movimientos;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creado;
+
+    // Getters y setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Long getHastaMovimientoId() { return hastaMovimientoId; }
+    public void setHastaMovimientoId(Long hastaMovimientoId) { this.hastaMovimientoId = hastaMovimientoId; }
+
+    public int getCantidad() { return cantidad; }
+    public void setCantidad(int cantidad) { this.cantidad = cantidad; }
+
+    public int getMovimientos() { return movimientos; }
+    public void setMovimientos(int movimientos) { this.movimientos = movimientos; }
+
+    public Date getCreado() { return creado; }
+    public void setCreado(Date creado) { this.creado = creado; }
+}
@@ -0,0 +1,49 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+// Stock apartado para un carrito: se descuenta al reservar y se devuelve al liberar o expirar
+@Entity
+@Table(name = "inventario_reserva", indexes = @Index(name = "idx_reserva_estado", columnList = "estado"))
+public class Reserva {
+    public enum Estado { PENDIENTE, CONFIRMADA, LIBERADA, EXPIRADA }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    private Integer cantidad;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Estado estado;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expira;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creada;
+
+    // Getters y setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+
+    public Date getExpira() { return expira; }
+    public void setExpira(Date expira) { this.expira = expira; }
+
+    public Date getCreada() { return creada; }
+    public void setCreada(Date creada) { this.creada = creada; }
+}
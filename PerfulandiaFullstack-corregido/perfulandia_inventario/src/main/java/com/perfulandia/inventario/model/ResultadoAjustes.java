@@ -0,0 +1,8 @@
+package com.perfulandia.inventario.model;
+
+import java.util.List;
+
+// Resultado de un lote de ajustes todo-o-nada: si algún producto no existe o no tiene stock,
+// no se aplica ninguno y se devuelven esos productos en rechazados
+public record ResultadoAjustes(boolean aplicado, List<Long> rechazados, List<Inventario> inventarios) {
+}
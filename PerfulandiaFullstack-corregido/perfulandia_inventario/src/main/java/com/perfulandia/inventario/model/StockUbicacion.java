@@ -0,0 +1,36 @@
+package com.perfulandia.inventario.model;
+
+import jakarta.persistence.*;
+
+// Stock de un producto en un almacén. Si un producto tiene ubicaciones, cantidadDisponible de su
+// fila de inventario es la suma de todas ellas y se mantiene en la misma transacción que cada cambio.
+@Entity
+@Table(name = "inventario_ubicacion",
+        uniqueConstraints = @UniqueConstraint(name = "uk_ubicacion_producto_almacen", columnNames = {"producto_id", "almacen"}))
+public class StockUbicacion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false, length = 40)
+    private String almacen;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    // Getters y setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public String getAlmacen() { return almacen; }
+    public void setAlmacen(String almacen) { this.almacen = almacen; }
+
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+}
@@ -0,0 +1,5 @@
+package com.perfulandia.inventario.model;
+
+// Almacén más cercano con stock suficiente para un producto
+public record UbicacionCercana(String almacen, String nombre, double distanciaKm, int cantidad) {
+}
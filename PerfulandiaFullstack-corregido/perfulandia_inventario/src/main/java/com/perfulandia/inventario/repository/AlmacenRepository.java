@@ -0,0 +1,9 @@
+package com.perfulandia.inventario.repository;
+
+import com.perfulandia.inventario.model.Almacen;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AlmacenRepository extends JpaRepository<Almacen, String> {
+}
@@ -2,9 +2,102 @@ package com.perfulandia.inventario.repository;
 
 import com.perfulandia.inventario.model.Inventario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface InventarioRepository extends JpaRepository<Inventario, Long> {
     Inventario findByProductoId(Long productoId);
-}
\ No newline at end of file
+
+    List<Inventario> findByProductoIdIn(Collection<Long> productoIds);
+
+    // Suma condicional en una sola sentencia: no se aplica si el stock quedaría negativo ni si el
+    // producto tiene ubicaciones (su ajuste se reparte entre ellas).
+    // LAST_INSERT_ID(expr) deja la nueva cantidad disponible en la conexión para ultimaCantidad()
+    @Modifying
+    @Query(value = "UPDATE inventario SET cantidad_disponible = LAST_INSERT_ID(cantidad_disponible + :delta) "
+            + "WHERE producto_id = :productoId AND con_ubicaciones = FALSE AND cantidad_disponible + :delta >= 0",
+            nativeQuery = true)
+    int ajustarCantidad(Long productoId, int delta);
+
+    // --- Productos con ubicaciones (inventario_ubicacion) ---
+
+    // Total de un producto con ubicaciones, tras ajustar las filas de sus almacenes
+    @Modifying
+    @Query(value = "UPDATE inventario SET cantidad_disponible = LAST_INSERT_ID(cantidad_disponible + :delta) "
+            + "WHERE producto_id = :productoId AND con_ubicaciones = TRUE AND cantidad_disponible + :delta >= 0",
+            nativeQuery = true)
+    int ajustarTotalUbicaciones(Long productoId, int delta);
+
+    // Lectura con bloqueo compartido: ve la marca confirmada más reciente, no la foto de la transacción.
+    // null si el producto no existe
+    @Query(value = "SELECT con_ubicaciones FROM inventario WHERE producto_id = :productoId FOR SHARE", nativeQuery = true)
+    Boolean conUbicaciones(Long productoId);
+
+    // Bloquea la fila del producto: serializa el paso a ubicaciones con los PUT y con otras fijaciones
+    @Query(value = "SELECT con_ubicaciones FROM inventario WHERE producto_id = :productoId FOR UPDATE", nativeQuery = true)
+    Boolean bloquearConUbicaciones(Long productoId);
+
+    @Modifying
+    @Query(value = "UPDATE inventario SET con_ubicaciones = TRUE, cantidad_disponible = :total WHERE producto_id = :productoId",
+            nativeQuery = true)
+    int pasarAUbicaciones(Long productoId, int total);
+
+    // Productos que ya tenían filas en inventario_ubicacion antes de existir la marca: se marcan y su
+    // total se realinea con la suma de sus ubicaciones
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE inventario i SET i.con_ubicaciones = TRUE, i.cantidad_disponible = "
+            + "(SELECT COALESCE(SUM(u.cantidad), 0) FROM inventario_ubicacion u WHERE u.producto_id = i.producto_id) "
+            + "WHERE i.con_ubicaciones = FALSE "
+            + "AND EXISTS (SELECT 1 FROM inventario_ubicacion u WHERE u.producto_id = i.producto_id)", nativeQuery = true)
+    int marcarConUbicaciones();
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    long ultimaCantidad();
+
+    // --- Productos fraccionados en buckets (inventario_bucket) ---
+
+    @Modifying
+    @Query(value = "UPDATE inventario_bucket SET cantidad = cantidad + :delta "
+            + "WHERE producto_id = :productoId AND bucket = :bucket AND cantidad + :delta >= 0", nativeQuery = true)
+    int ajustarBucket(Long productoId, int bucket, int delta);
+
+    @Query(value = "SELECT CAST(COALESCE(SUM(cantidad), 0) AS SIGNED) FROM inventario_bucket WHERE producto_id = :productoId",
+            nativeQuery = true)
+    long sumarBuckets(Long productoId);
+
+    // Bloquea todos los buckets del producto (en orden de bucket) para repartir el stock
+    @Query(value = "SELECT cantidad FROM inventario_bucket WHERE producto_id = :productoId ORDER BY bucket FOR UPDATE",
+            nativeQuery = true)
+    List<Integer> bloquearBuckets(Long productoId);
+
+    @Modifying
+    @Query(value = "UPDATE inventario_bucket SET cantidad = :cantidad WHERE producto_id = :productoId AND bucket = :bucket",
+            nativeQuery = true)
+    int fijarBucket(Long productoId, int bucket, int cantidad);
+
+    @Modifying
+    @Query(value = "INSERT INTO inventario_bucket (producto_id, bucket, cantidad) VALUES (:productoId, :bucket, :cantidad)",
+            nativeQuery = true)
+    int crearBucket(Long productoId, int bucket, int cantidad);
+
+    @Modifying
+    @Query(value = "DELETE FROM inventario_bucket WHERE producto_id = :productoId", nativeQuery = true)
+    int borrarBuckets(Long productoId);
+
+    @Query(value = "SELECT DISTINCT producto_id FROM inventario_bucket", nativeQuery = true)
+    List<Long> productosFraccionados();
+
+    @Query(value = "SELECT cantidad_disponible FROM inventario WHERE producto_id = :productoId FOR UPDATE", nativeQuery = true)
+    Integer bloquearCantidad(Long productoId);
+
+    @Modifying
+    @Query(value = "UPDATE inventario SET cantidad_disponible = :cantidad WHERE producto_id = :productoId", nativeQuery = true)
+    int fijarCantidad(Long productoId, int cantidad);
+}
@@ -0,0 +1,13 @@
+package com.perfulandia.inventario.repository;
+
+import com.perfulandia.inventario.model.MovimientoStock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MovimientoRepository extends JpaRepository<MovimientoStock, Long> {
+    List<MovimientoStock> findByProductoIdAndIdGreaterThanOrderByIdAsc(Long productoId, Long id, Pageable pageable);
+}
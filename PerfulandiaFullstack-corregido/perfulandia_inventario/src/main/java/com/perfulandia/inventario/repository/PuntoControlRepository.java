@@ -0,0 +1,10 @@
+package com.perfulandia.inventario.repository;
+
+import com.perfulandia.inventario.model.PuntoControlStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PuntoControlRepository extends JpaRepository<PuntoControlStock, Long> {
+    PuntoControlStock findFirstByProductoIdOrderByHastaMovimientoIdDesc(Long productoId);
+}
@@ -0,0 +1,19 @@
+package com.perfulandia.inventario.repository;
+
+import com.perfulandia.inventario.model.Reserva;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReservaRepository extends JpaRepository<Reserva, Long> {
+    List<Reserva> findByEstado(Reserva.Estado estado);
+
+    // Transición condicional: solo una de confirmar, liberar o expirar gana sobre una reserva pendiente
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Reserva r SET r.estado = :nuevo WHERE r.id = :id AND r.estado = :actual")
+    int cambiarEstado(Long id, Reserva.Estado actual, Reserva.Estado nuevo);
+}
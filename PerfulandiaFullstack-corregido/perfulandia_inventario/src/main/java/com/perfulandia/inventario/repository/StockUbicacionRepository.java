@@ -0,0 +1,30 @@
+package com.perfulandia.inventario.repository;
+
+import com.perfulandia.inventario.model.StockUbicacion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockUbicacionRepository extends JpaRepository<StockUbicacion, Long> {
+    List<StockUbicacion> findByProductoIdOrderByAlmacen(Long productoId);
+
+    // Bloquea todas las ubicaciones del producto, siempre en orden de id
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StockUbicacion s WHERE s.productoId = :productoId ORDER BY s.id")
+    List<StockUbicacion> bloquearPorProducto(Long productoId);
+
+    @Modifying
+    @Query(value = "UPDATE inventario_ubicacion SET cantidad = cantidad + :delta "
+            + "WHERE producto_id = :productoId AND almacen = :almacen AND cantidad + :delta >= 0", nativeQuery = true)
+    int ajustar(Long productoId, String almacen, int delta);
+
+    @Modifying
+    @Query("DELETE FROM StockUbicacion s WHERE s.productoId = :productoId")
+    int borrarPorProducto(Long productoId);
+}
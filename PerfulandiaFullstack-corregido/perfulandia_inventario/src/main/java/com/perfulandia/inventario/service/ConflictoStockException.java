@@ -0,0 +1,12 @@
+package com.perfulandia.inventario.service;
+
+// El stock del producto no admite el cambio en su modo actual (buckets frente a ubicaciones, o una
+// escritura directa sobre un producto con ubicaciones), o su total no cuadra con sus ubicaciones.
+// Reintentar no lo arregla: los controladores la responden con 409 e InventarioListener manda el
+// mensaje a la DLQ.
+public class ConflictoStockException extends RuntimeException {
+
+    public ConflictoStockException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,86 @@
+package com.perfulandia.inventario.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Deduplicación de eventos de pedido: el outbox entrega al menos una vez, así que un evento puede
+// llegar repetido (reenvío tras un confirm perdido, nack con requeue...). Las claves se guardan con
+// una retención bastante mayor que el backoff máximo del outbox de pedido.
+@Service
+public class EventosProcesados {
+    // Con rewriteBatchedStatements el batch sale como un único INSERT multi-fila. Una clave ya
+    // presente (o insertada por una transacción concurrente, que espera a su commit) se ignora
+    private static final String SQL_REGISTRAR = "INSERT IGNORE INTO inventario_evento_procesado (clave, lote, procesado) "
+            + "VALUES (?, ?, ?)";
+    private static final String SQL_NUEVAS = "SELECT clave FROM inventario_evento_procesado WHERE lote = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long retencionMs;
+    private final int loteBorrado;
+
+    public EventosProcesados(JdbcTemplate jdbcTemplate,
+                             @Value("${inventario.eventos.retencion-horas:72}") long retencionHoras,
+                             @Value("${inventario.eventos.lote-borrado:5000}") int loteBorrado) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retencionMs = TimeUnit.HOURS.toMillis(retencionHoras);
+        this.loteBorrado = loteBorrado;
+    }
+
+    // Registra las claves y devuelve las que no se habían procesado antes. Debe ir en la transacción
+    // del ajuste: si esta se deshace, las claves tampoco quedan y el evento se puede reintentar
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<String> registrar(List<String> claves) {
+        if (claves.isEmpty()) {
+            return Set.of();
+        }
+        long lote = ThreadLocalRandom.current().nextLong();
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(SQL_REGISTRAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, claves.get(i));
+                ps.setLong(2, lote);
+                ps.setTimestamp(3, ahora);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return claves.size();
+            }
+        });
+        return new HashSet<>(jdbcTemplate.queryForList(SQL_NUEVAS, String.class, lote));
+    }
+
+    public void purgar() {
+        Timestamp limite = new Timestamp(System.currentTimeMillis() - retencionMs);
+        int borrados;
+        do {
+            borrados = jdbcTemplate.update("DELETE FROM inventario_evento_procesado WHERE procesado < ? LIMIT ?",
+                    limite, loteBorrado);
+        } while (borrados == loteBorrado);
+    }
+
+    @Scheduled(initialDelayString = "${inventario.eventos.purga-ms:600000}",
+            fixedDelayString = "${inventario.eventos.purga-ms:600000}")
+    public void purgarSeguro() {
+        try {
+            purgar();
+        } catch (RuntimeException e) {
+            System.out.println("Error purgando eventos procesados: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package com.perfulandia.inventario.service;
 
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import com.perfulandia.inventario.config.EventoInventarioConverter;
+import com.perfulandia.inventario.config.RabbitMQConfig;
+import com.perfulandia.inventario.model.AjusteEventos;
+import com.perfulandia.inventario.model.EventoInventario;
+import com.perfulandia.inventario.util.LongIntMap;
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.core.Message;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @Service
 public class InventarioListener {
@@ -10,13 +23,113 @@ public class InventarioListener {
     @Autowired
     private InventarioService inventarioService;
 
-    @RabbitListener(queues = "pedido-inventario")
-    public void recibirMensaje(String mensaje) {
-        System.out.println("Mensaje recibido por RabbitMQ: " + mensaje);
-        String[] partes = mensaje.split(":");
-        Long productoId = Long.parseLong(partes[0]);
-        int cantidad = Integer.parseInt(partes[1]);
-        inventarioService.ajustarCantidad(productoId, -cantidad);
-        System.out.println("Descontado " + cantidad + " del producto " + productoId + " por RabbitMQ");
+    @Autowired
+    private EventoInventarioConverter converter;
+
+    // Cada mensaje es un EventoInventario con una o varias líneas. Los descuentos del lote se suman
+    // por producto y se aplican en un único batch JDBC. Los contenedores se registran en InventarioListenerConfig.
+    // Ack manual: un mensaje ilegible o de versión desconocida se rechaza hacia pedido-inventario.dlq sin
+    // frenar al resto; si falla la base de datos antes de aplicar el lote, los válidos vuelven a la cola.
+    // Un conflicto con el modo de stock de un producto deshace el lote: se aplica mensaje a mensaje y
+    // solo los que chocan van a la DLQ.
+    // La entrega es al menos una vez: el messageId (clave del outbox de pedido) evita descontar dos veces.
+    public void recibirMensajes(List<Message> mensajes, Channel channel) throws IOException {
+        List<EventoInventario> eventos = new ArrayList<>(mensajes.size());
+        List<String> claves = new ArrayList<>(mensajes.size());
+        List<Long> validos = new ArrayList<>(mensajes.size());
+        for (Message mensaje : mensajes) {
+            long tag = mensaje.getMessageProperties().getDeliveryTag();
+            EventoInventario evento;
+            try {
+                evento = (EventoInventario) converter.fromMessage(mensaje);
+            } catch (RuntimeException e) {
+                System.out.println("Mensaje de inventario enviado a " + RabbitMQConfig.INVENTARIO_DLQ + ": " + e.getMessage());
+                channel.basicReject(tag, false);
+                continue;
+            }
+            validos.add(tag);
+            eventos.add(evento);
+            claves.add(mensaje.getMessageProperties().getMessageId());
+        }
+        if (validos.isEmpty()) {
+            return;
+        }
+
+        AjusteEventos ajuste;
+        try {
+            ajuste = inventarioService.ajustarEventos(eventos, claves);
+        } catch (ConflictoStockException e) {
+            System.out.println("Conflicto de stock en un lote de " + validos.size() + " mensajes, se aplican uno a uno: "
+                    + e.getMessage());
+            aplicarUnoAUno(eventos, claves, validos, channel);
+            return;
+        } catch (DataAccessException | TransactionException e) {
+            // Nada se confirmó: el lote completo se puede reintentar
+            System.out.println("Error aplicando " + validos.size() + " mensajes de inventario, se reintentarán: " + e.getMessage());
+            for (long tag : validos) {
+                channel.basicNack(tag, false, true);
+            }
+            return;
+        } catch (RuntimeException e) {
+            // Un fallo que no es de la base de datos se repetiría en cada reintento
+            System.out.println("Mensajes de inventario enviados a " + RabbitMQConfig.INVENTARIO_DLQ + ": " + e.getMessage());
+            for (long tag : validos) {
+                channel.basicReject(tag, false);
+            }
+            return;
+        }
+        reintentarRechazados(ajuste);
+        for (long tag : validos) {
+            channel.basicAck(tag, false);
+        }
+        System.out.println("Lote RabbitMQ: " + validos.size() + " mensajes aplicados sobre "
+                + ajuste.productos().length + " productos" + (ajuste.duplicados() > 0 ? ", " + ajuste.duplicados() + " repetidos" : ""));
+    }
+
+    // Cada mensaje en su propia transacción. Ninguno se confirmó con el lote, así que todos se pueden aplicar
+    private void aplicarUnoAUno(List<EventoInventario> eventos, List<String> claves, List<Long> tags,
+                                Channel channel) throws IOException {
+        for (int i = 0; i < eventos.size(); i++) {
+            long tag = tags.get(i);
+            try {
+                reintentarRechazados(inventarioService.ajustarEventos(List.of(eventos.get(i)),
+                        Collections.singletonList(claves.get(i))));
+                channel.basicAck(tag, false);
+            } catch (DataAccessException | TransactionException e) {
+                System.out.println("Error aplicando un mensaje de inventario, se reintentará: " + e.getMessage());
+                channel.basicNack(tag, false, true);
+            } catch (RuntimeException e) {
+                System.out.println("Mensaje de inventario enviado a " + RabbitMQConfig.INVENTARIO_DLQ + ": " + e.getMessage());
+                channel.basicReject(tag, false);
+            }
+        }
+    }
+
+    // Si el total de un producto no cabe en su stock, se reintentan sus líneas una a una. El batch ya
+    // está confirmado: a partir de aquí el lote no vuelve a la cola, o se descontaría dos veces.
+    private void reintentarRechazados(AjusteEventos ajuste) {
+        long[] productos = ajuste.productos();
+        int[] filas = ajuste.filas();
+        List<EventoInventario.Linea> lineas = ajuste.lineas();
+        LongIntMap rechazados = new LongIntMap();
+        for (int i = 0; i < productos.length; i++) {
+            if (filas[i] == 0) {
+                rechazados.put(productos[i], 1);
+            }
+        }
+        for (EventoInventario.Linea linea : lineas) {
+            if (rechazados.containsKey(linea.productoId())) {
+                String motivo = "producto inexistente o stock insuficiente";
+                try {
+                    if (inventarioService.ajustarCantidad(linea.productoId(), -linea.cantidad()).aplicado()) {
+                        continue;
+                    }
+                } catch (RuntimeException e) {
+                    motivo = e.getMessage();
+                }
+                System.out.println("No se pudo descontar " + linea.cantidad() + " del producto " + linea.productoId()
+                        + ": " + motivo);
+            }
+        }
     }
 }
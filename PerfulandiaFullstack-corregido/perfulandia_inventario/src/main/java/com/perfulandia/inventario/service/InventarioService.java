@@ -1,46 +1,418 @@
 package com.perfulandia.inventario.service;
 
+import com.perfulandia.inventario.model.AjusteEventos;
+import com.perfulandia.inventario.model.AjusteLinea;
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.model.EventoInventario;
 import com.perfulandia.inventario.model.Inventario;
+import com.perfulandia.inventario.model.ResultadoAjustes;
 import com.perfulandia.inventario.repository.InventarioRepository;
+import com.perfulandia.inventario.util.LongIntMap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class InventarioService {
+    private static final String SQL_AJUSTE = "UPDATE inventario SET cantidad_disponible = cantidad_disponible + ? "
+            + "WHERE producto_id = ? AND con_ubicaciones = FALSE AND cantidad_disponible + ? >= 0";
+
     private final InventarioRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    // Solo existe con inventario.ledger.habilitado=true; entonces las cantidades se leen y ajustan en memoria
+    private final StockEnMemoria stockEnMemoria;
+    private final StockEventos stockEventos;
+    // Productos con el stock repartido en buckets (sin efecto en modo memoria)
+    private final StockFraccionado stockFraccionado;
+    private final MovimientoService movimientoService;
+    private final UbicacionService ubicacionService;
+    private final EventosProcesados eventosProcesados;
 
-    public InventarioService(InventarioRepository repository) {
+    public InventarioService(InventarioRepository repository, JdbcTemplate jdbcTemplate,
+                             ObjectProvider<StockEnMemoria> stockEnMemoria, StockEventos stockEventos,
+                             StockFraccionado stockFraccionado, MovimientoService movimientoService,
+                             UbicacionService ubicacionService, EventosProcesados eventosProcesados) {
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stockEnMemoria = stockEnMemoria.getIfAvailable();
+        this.stockEventos = stockEventos;
+        this.stockFraccionado = stockFraccionado;
+        this.movimientoService = movimientoService;
+        this.ubicacionService = ubicacionService;
+        this.eventosProcesados = eventosProcesados;
     }
 
     public List<Inventario> findAll() {
-        return repository.findAll();
+        List<Inventario> inventarios = repository.findAll();
+        inventarios.forEach(this::conCantidadVigente);
+        return inventarios;
     }
 
     public Inventario findByProductoId(Long productoId) {
-        return repository.findByProductoId(productoId);
+        if (stockEnMemoria != null) {
+            return stockEnMemoria.consultar(productoId);
+        }
+        Inventario inventario = repository.findByProductoId(productoId);
+        if (inventario != null) {
+            conCantidadVigente(inventario);
+        }
+        return inventario;
+    }
+
+    // Una sola consulta IN para todos los productos pedidos; los que no existen no aparecen
+    public List<Inventario> findByProductoIds(Collection<Long> productoIds) {
+        if (stockEnMemoria != null) {
+            List<Inventario> inventarios = new ArrayList<>(productoIds.size());
+            for (Long productoId : productoIds) {
+                Inventario inventario = stockEnMemoria.consultar(productoId);
+                if (inventario != null) {
+                    inventarios.add(inventario);
+                }
+            }
+            return inventarios;
+        }
+        List<Inventario> inventarios = repository.findByProductoIdIn(productoIds);
+        inventarios.forEach(this::conCantidadVigente);
+        return inventarios;
     }
 
     public Inventario findById(Long id) {
-        return repository.findById(id).orElse(null);
+        Inventario inventario = repository.findById(id).orElse(null);
+        if (inventario != null) {
+            conCantidadVigente(inventario);
+        }
+        return inventario;
     }
 
+    @Transactional
     public Inventario save(Inventario inventario) {
-        return repository.save(inventario);
+        return save(inventario, null);
     }
 
-    // MÉTODO QUE FALTABA: Ajustar cantidad de inventario por productoId
-    public Inventario ajustarCantidad(Long productoId, int cantidad) {
-        Inventario inventario = repository.findByProductoId(productoId);
-        if (inventario != null) {
-            inventario.setCantidadDisponible(inventario.getCantidadDisponible() + cantidad);
-            return repository.save(inventario);
+    // cantidadLeida: la cantidad que tenía la entidad cuando se leyó para modificarla (PUT/PATCH).
+    // En modo memoria solo se aplica la diferencia, sin pisar los ajustes que llegaron entre medias.
+    // Un producto con ubicaciones no se reescribe por JPA (su total es la suma de los almacenes):
+    // ConflictoStockException, comprobado con su fila bloqueada.
+    @Transactional
+    public Inventario save(Inventario inventario, Integer cantidadLeida) {
+        if (inventario.getId() != null && inventario.getProductoId() != null
+                && Boolean.TRUE.equals(repository.bloquearConUbicaciones(inventario.getProductoId()))) {
+            throw new ConflictoStockException("El producto " + inventario.getProductoId()
+                    + " tiene ubicaciones: su stock se cambia por almacén");
+        }
+        Inventario guardado = repository.save(inventario);
+        if (guardado.getProductoId() != null) {
+            Integer cantidad = guardado.getCantidadDisponible();
+            if (stockEnMemoria != null && cantidadLeida != null && cantidad != null) {
+                if (!cantidad.equals(cantidadLeida)) {
+                    movimientoService.registrarAjuste(guardado.getProductoId(), cantidad - cantidadLeida, null);
+                }
+            } else if (cantidad != null) {
+                movimientoService.registrarFijacion(guardado.getProductoId(), cantidad);
+            }
+            if (stockEnMemoria != null) {
+                stockEnMemoria.registrar(guardado, cantidadLeida);
+            } else if (stockFraccionado.esFraccionado(guardado.getProductoId()) && guardado.getCantidadDisponible() != null) {
+                stockFraccionado.fijar(guardado.getProductoId(), guardado.getCantidadDisponible());
+            }
+            stockEventos.publicar(guardado.getProductoId(), guardado.getCantidadDisponible());
+        }
+        return guardado;
+    }
+
+    // Ajustar cantidad de inventario por productoId con un UPDATE condicional atómico.
+    // No se aplica (filas = 0) si el producto no existe o el stock no alcanza.
+    @Transactional
+    public AjusteStock ajustarCantidad(Long productoId, int cantidad) {
+        AjusteStock ajuste = aplicarUno(productoId, cantidad);
+        if (ajuste.aplicado()) {
+            movimientoService.registrarAjuste(productoId, cantidad, ajuste.cantidadDisponible());
+        }
+        return ajuste;
+    }
+
+    // Ajuste en un almacén concreto: la fila del almacén y el total del producto en la misma transacción
+    @Transactional
+    public AjusteStock ajustarUbicacion(Long productoId, String almacen, int cantidad) {
+        if (!ubicacionService.ajustar(productoId, almacen, cantidad)) {
+            return new AjusteStock(0, null);
+        }
+        AjusteStock ajuste = ajustarTotal(productoId, cantidad);
+        movimientoService.registrarAjuste(productoId, cantidad, ajuste.cantidadDisponible());
+        return ajuste;
+    }
+
+    // Fija la cantidad de un almacén. La primera ubicación pasa el producto a ubicaciones: desde
+    // entonces su total es la suma de ellas. La marca se lee con la fila bloqueada, así dos primeras
+    // fijaciones concurrentes (en esta u otra réplica) se ordenan. null si el producto no existe;
+    // ConflictoStockException si su stock está repartido en buckets.
+    @Transactional
+    public AjusteStock fijarUbicacion(Long productoId, String almacen, int cantidad) {
+        Boolean conUbicaciones = repository.bloquearConUbicaciones(productoId);
+        if (conUbicaciones == null) {
+            return null;
+        }
+        if (stockFraccionado.esFraccionado(productoId)) {
+            throw new ConflictoStockException("El producto " + productoId + " está repartido en buckets y no admite ubicaciones");
+        }
+        int delta = ubicacionService.fijar(productoId, almacen, cantidad);
+        if (conUbicaciones) {
+            AjusteStock ajuste = ajustarTotal(productoId, delta);
+            movimientoService.registrarAjuste(productoId, delta, ajuste.cantidadDisponible());
+            return ajuste;
+        }
+        int total = ubicacionService.total(productoId);
+        repository.pasarAUbicaciones(productoId, total);
+        if (stockEnMemoria != null) {
+            stockEnMemoria.pasarAUbicaciones(productoId, total);
+        }
+        movimientoService.registrarFijacion(productoId, total);
+        stockEventos.publicar(productoId, total);
+        return new AjusteStock(1, total);
+    }
+
+    // La caché de UbicacionService solo adelanta el camino; si no sabe de ubicaciones, el ajuste
+    // directo las descarta con la marca de la fila y entonces se reparte entre almacenes
+    private AjusteStock aplicarUno(Long productoId, int cantidad) {
+        if (!ubicacionService.tieneUbicaciones(productoId)) {
+            AjusteStock ajuste = ajusteSinUbicaciones(productoId, cantidad);
+            if (ajuste != null) {
+                if (ajuste.aplicado()) {
+                    stockEventos.publicar(productoId, ajuste.cantidadDisponible());
+                }
+                return ajuste;
+            }
+        }
+        return ajustarPorUbicaciones(productoId, cantidad);
+    }
+
+    // Primero se reparte el ajuste entre almacenes y después se ajusta el total
+    private AjusteStock ajustarPorUbicaciones(Long productoId, int cantidad) {
+        if (!ubicacionService.repartir(productoId, cantidad)) {
+            return new AjusteStock(0, null);
+        }
+        return ajustarTotal(productoId, cantidad);
+    }
+
+    // El total es la suma de las ubicaciones, que ya pasaron la guarda: si no se aplica, el total
+    // estaba desalineado y se deshace la transacción
+    private AjusteStock ajustarTotal(Long productoId, int cantidad) {
+        AjusteStock ajuste;
+        if (stockEnMemoria != null) {
+            ajuste = stockEnMemoria.ajustar(productoId, cantidad);
+        } else {
+            int filas = repository.ajustarTotalUbicaciones(productoId, cantidad);
+            ajuste = filas == 0 ? new AjusteStock(0, null) : new AjusteStock(filas, (int) repository.ultimaCantidad());
+        }
+        if (!ajuste.aplicado()) {
+            throw new ConflictoStockException("El total del producto " + productoId + " no coincide con sus ubicaciones");
+        }
+        stockEventos.publicar(productoId, ajuste.cantidadDisponible());
+        return ajuste;
+    }
+
+    // null si el producto tiene ubicaciones y el ajuste se tiene que repartir entre ellas
+    private AjusteStock ajusteSinUbicaciones(Long productoId, int cantidad) {
+        if (stockEnMemoria != null) {
+            return stockEnMemoria.ajustarSinUbicaciones(productoId, cantidad);
         }
-        return null;
+        if (stockFraccionado.esFraccionado(productoId)) {
+            return stockFraccionado.ajustar(productoId, cantidad);
+        }
+        int filas = repository.ajustarCantidad(productoId, cantidad);
+        if (filas > 0) {
+            return new AjusteStock(filas, (int) repository.ultimaCantidad());
+        }
+        // Sin stock, inexistente o con ubicaciones (quizá recién marcado por otra réplica)
+        return Boolean.TRUE.equals(repository.conUbicaciones(productoId)) ? null : new AjusteStock(0, null);
+    }
+
+    // Aplica varios ajustes en un solo batch JDBC; devuelve las filas afectadas por producto.
+    // Los productos deben venir ordenados para que dos lotes concurrentes bloqueen filas en el mismo orden.
+    @Transactional
+    public int[] ajustarCantidades(long[] productoIds, int[] deltas) {
+        int[] filas = aplicarCantidades(productoIds, deltas);
+        movimientoService.registrarAjustes(productoIds, deltas, filas);
+        return filas;
+    }
+
+    // Descuenta las líneas de los eventos de pedido de un lote del listener. claves[i] es el messageId
+    // del evento i (null en mensajes sin clave, que no se deduplican); los ya procesados se saltan.
+    // Las claves se registran en esta misma transacción: o quedan ajuste y claves, o ninguno
+    @Transactional
+    public AjusteEventos ajustarEventos(List<EventoInventario> eventos, List<String> claves) {
+        List<String> conClave = new ArrayList<>(claves.size());
+        for (String clave : claves) {
+            if (clave != null) {
+                conClave.add(clave);
+            }
+        }
+        Set<String> nuevas = eventosProcesados.registrar(conClave);
+
+        LongIntMap deltas = new LongIntMap(eventos.size());
+        List<EventoInventario.Linea> lineas = new ArrayList<>(eventos.size());
+        int duplicados = 0;
+        for (int i = 0; i < eventos.size(); i++) {
+            // Una clave repetida dentro del mismo lote solo cuenta la primera vez
+            if (claves.get(i) != null && !nuevas.remove(claves.get(i))) {
+                duplicados++;
+                continue;
+            }
+            for (EventoInventario.Linea linea : eventos.get(i).lineas()) {
+                lineas.add(linea);
+                deltas.addTo(linea.productoId(), -linea.cantidad());
+            }
+        }
+        long[] productos = deltas.sortedKeys();
+        int[] totales = new int[productos.length];
+        for (int i = 0; i < productos.length; i++) {
+            totales[i] = deltas.get(productos[i], 0);
+        }
+        int[] filas = productos.length > 0 ? ajustarCantidades(productos, totales) : new int[0];
+        return new AjusteEventos(productos, totales, filas, lineas, duplicados);
+    }
+
+    private int[] aplicarCantidades(long[] productoIds, int[] deltas) {
+        if (stockEnMemoria != null) {
+            int[] filas = new int[productoIds.length];
+            for (int i = 0; i < productoIds.length; i++) {
+                filas[i] = aplicarUno(productoIds[i], deltas[i]).filas();
+            }
+            return filas;
+        }
+        for (long productoId : productoIds) {
+            if (porSeparado(productoId)) {
+                return ajustarCantidadesMixto(productoIds, deltas);
+            }
+        }
+        int[] filas = jdbcTemplate.batchUpdate(SQL_AJUSTE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, deltas[i]);
+                ps.setLong(2, productoIds[i]);
+                ps.setInt(3, deltas[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return productoIds.length;
+            }
+        });
+        // El batch no devuelve las cantidades resultantes: la difusión las lee en bloque. Un producto
+        // que no se aplicó puede tener ubicaciones que esta réplica aún no conoce
+        for (int i = 0; i < productoIds.length; i++) {
+            if (filas[i] > 0) {
+                stockEventos.publicar(productoIds[i], null);
+            } else if (Boolean.TRUE.equals(repository.conUbicaciones(productoIds[i]))) {
+                filas[i] = ajustarPorUbicaciones(productoIds[i], deltas[i]).filas();
+            }
+        }
+        return filas;
+    }
+
+    // Productos fraccionados o con varias ubicaciones: no caben en el UPDATE del batch
+    private boolean porSeparado(long productoId) {
+        return stockFraccionado.esFraccionado(productoId) || ubicacionService.tieneUbicaciones(productoId);
+    }
+
+    // Los productos que van por separado se ajustan uno a uno; el resto va en el batch
+    private int[] ajustarCantidadesMixto(long[] productoIds, int[] deltas) {
+        int[] filas = new int[productoIds.length];
+        int[] normales = new int[productoIds.length];
+        int n = 0;
+        for (int i = 0; i < productoIds.length; i++) {
+            if (porSeparado(productoIds[i])) {
+                filas[i] = aplicarUno(productoIds[i], deltas[i]).filas();
+            } else {
+                normales[n++] = i;
+            }
+        }
+        long[] ids = new long[n];
+        int[] totales = new int[n];
+        for (int j = 0; j < n; j++) {
+            ids[j] = productoIds[normales[j]];
+            totales[j] = deltas[normales[j]];
+        }
+        int[] filasNormales = n > 0 ? aplicarCantidades(ids, totales) : new int[0];
+        for (int j = 0; j < n; j++) {
+            filas[normales[j]] = filasNormales[j];
+        }
+        return filas;
     }
 
+    // Aplica un lote de ajustes en una transacción con un único batch JDBC. Las líneas del mismo
+    // producto se suman antes. Si alguno no se puede aplicar se deshace el lote completo.
+    @Transactional
+    public ResultadoAjustes ajustarLote(List<AjusteLinea> lineas) {
+        LongIntMap deltas = new LongIntMap(lineas.size());
+        for (AjusteLinea linea : lineas) {
+            deltas.addTo(linea.productoId(), linea.cantidad());
+        }
+        long[] productoIds = deltas.sortedKeys();
+        int[] totales = new int[productoIds.length];
+        for (int i = 0; i < productoIds.length; i++) {
+            totales[i] = deltas.get(productoIds[i], 0);
+        }
+
+        int[] filas = ajustarCantidades(productoIds, totales);
+        List<Long> rechazados = new ArrayList<>();
+        for (int i = 0; i < productoIds.length; i++) {
+            if (filas[i] == 0) {
+                rechazados.add(productoIds[i]);
+            }
+        }
+        if (!rechazados.isEmpty()) {
+            // En modo memoria el rollback también deshace los ajustes ya aplicados en memoria
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return new ResultadoAjustes(false, rechazados, List.of());
+        }
+        List<Long> ids = new ArrayList<>(productoIds.length);
+        for (long productoId : productoIds) {
+            ids.add(productoId);
+        }
+        return new ResultadoAjustes(true, List.of(), findByProductoIds(ids));
+    }
+
+    @Transactional
     public void deleteById(Long id) {
+        Inventario inventario = repository.findById(id).orElse(null);
         repository.deleteById(id);
+        if (inventario == null || inventario.getProductoId() == null) {
+            return;
+        }
+        ubicacionService.borrar(inventario.getProductoId());
+        if (stockEnMemoria != null) {
+            stockEnMemoria.olvidar(inventario.getProductoId());
+        } else if (stockFraccionado.esFraccionado(inventario.getProductoId())) {
+            stockFraccionado.olvidar(inventario.getProductoId());
+        }
+    }
+
+    // La fila de MySQL puede ir hasta flush-ms por detrás de la memoria; en un producto fraccionado
+    // la cantidad vigente es la suma de sus buckets
+    private void conCantidadVigente(Inventario inventario) {
+        Long productoId = inventario.getProductoId();
+        if (productoId == null) {
+            return;
+        }
+        Integer cantidad = null;
+        if (stockEnMemoria != null) {
+            cantidad = stockEnMemoria.cantidad(productoId);
+        } else if (stockFraccionado.esFraccionado(productoId)) {
+            cantidad = stockFraccionado.cantidad(productoId);
+        }
+        if (cantidad != null) {
+            inventario.setCantidadDisponible(cantidad);
+        }
     }
 }
\ No newline at end of file
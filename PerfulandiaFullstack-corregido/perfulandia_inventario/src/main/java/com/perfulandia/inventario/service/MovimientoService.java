@@ -0,0 +1,267 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.AuditoriaStock;
+import com.perfulandia.inventario.model.MovimientoStock;
+import com.perfulandia.inventario.model.PuntoControlStock;
+import com.perfulandia.inventario.repository.MovimientoRepository;
+import com.perfulandia.inventario.repository.PuntoControlRepository;
+import com.perfulandia.inventario.util.LongIntMap;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Libro de movimientos de stock: cada ajuste aplicado inserta una fila en la misma transacción que
+// el cambio de la fila de inventario, que hace de foto vigente. La compactación pliega los
+// movimientos anteriores a la retención en un punto de control por producto y los borra, así una
+// auditoría solo recorre los movimientos desde el último punto de control. En modo memoria los
+// movimientos llegan a la tabla con el volcado de StockEnMemoria (flush-ms de retraso), igual que el stock.
+@Service
+public class MovimientoService {
+    // StockEnMemoria lo usa para insertar en lote los movimientos anotados en el WAL
+    static final String SQL_INSERTAR = "INSERT INTO inventario_movimiento (producto_id, tipo, delta, cantidad, creado) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_PLEGAR = "SELECT producto_id, tipo, delta, cantidad FROM inventario_movimiento "
+            + "WHERE id > ? AND id <= ? ORDER BY id";
+    private static final String SQL_ULTIMOS_PUNTOS = "SELECT c.producto_id, c.cantidad FROM inventario_checkpoint c "
+            + "WHERE c.hasta_movimiento_id = (SELECT MAX(c2.hasta_movimiento_id) FROM inventario_checkpoint c2 "
+            + "WHERE c2.producto_id = c.producto_id)";
+    private static final String SQL_PUNTO = "INSERT INTO inventario_checkpoint (producto_id, hasta_movimiento_id, cantidad, movimientos, creado) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final int MAX_MOVIMIENTOS_AUDITORIA = 100_000;
+
+    private final MovimientoRepository movimientoRepository;
+    private final PuntoControlRepository puntoControlRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Solo en modo memoria (inventario.ledger.habilitado=true)
+    private final StockEnMemoria stockEnMemoria;
+    private final boolean habilitado;
+    private final long retencionMs;
+    private final int loteBorrado;
+
+    public MovimientoService(MovimientoRepository movimientoRepository, PuntoControlRepository puntoControlRepository,
+                             JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             ObjectProvider<StockEnMemoria> stockEnMemoria,
+                             @Value("${inventario.movimientos.habilitado:true}") boolean habilitado,
+                             @Value("${inventario.movimientos.retencion-horas:24}") long retencionHoras,
+                             @Value("${inventario.movimientos.lote-borrado:5000}") int loteBorrado) {
+        this.movimientoRepository = movimientoRepository;
+        this.puntoControlRepository = puntoControlRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockEnMemoria = stockEnMemoria.getIfAvailable();
+        this.habilitado = habilitado;
+        this.retencionMs = TimeUnit.HOURS.toMillis(retencionHoras);
+        this.loteBorrado = loteBorrado;
+    }
+
+    // La primera vez, la cantidad actual de cada producto hace de punto de control inicial
+    // (antes de que arranquen los listeners)
+    @PostConstruct
+    public void sembrar() {
+        if (!habilitado) {
+            return;
+        }
+        Long existentes = jdbcTemplate.queryForObject("SELECT (SELECT COUNT(*) FROM inventario_checkpoint) "
+                + "+ (SELECT COUNT(*) FROM inventario_movimiento)", Long.class);
+        if (existentes != null && existentes == 0) {
+            int filas = jdbcTemplate.update("INSERT INTO inventario_checkpoint (producto_id, hasta_movimiento_id, cantidad, "
+                    + "movimientos, creado) SELECT producto_id, 0, COALESCE(cantidad_disponible, 0), 0, ? FROM inventario "
+                    + "WHERE producto_id IS NOT NULL", new Timestamp(System.currentTimeMillis()));
+            System.out.println("Libro de movimientos iniciado con " + filas + " puntos de control");
+        }
+    }
+
+    // Se llaman dentro de la transacción del ajuste. En modo memoria no hay INSERT síncrono: el
+    // movimiento va al WAL y StockEnMemoria lo inserta en lote al volcar
+    public void registrarAjuste(long productoId, int delta, Integer cantidad) {
+        if (!habilitado) {
+            return;
+        }
+        if (stockEnMemoria != null) {
+            stockEnMemoria.anotarMovimiento(productoId, false, delta, cantidad);
+            return;
+        }
+        jdbcTemplate.update(SQL_INSERTAR, productoId, MovimientoStock.Tipo.AJUSTE.name(), delta, cantidad,
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    // Un único batch para los productos con filas[i] > 0
+    public void registrarAjustes(long[] productoIds, int[] deltas, int[] filas) {
+        if (!habilitado) {
+            return;
+        }
+        int[] aplicados = new int[productoIds.length];
+        int n = 0;
+        for (int i = 0; i < productoIds.length; i++) {
+            if (filas[i] > 0) {
+                aplicados[n++] = i;
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        if (stockEnMemoria != null) {
+            for (int k = 0; k < n; k++) {
+                stockEnMemoria.anotarMovimiento(productoIds[aplicados[k]], false, deltas[aplicados[k]], null);
+            }
+            return;
+        }
+        int total = n;
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(SQL_INSERTAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int j = aplicados[i];
+                ps.setLong(1, productoIds[j]);
+                ps.setString(2, MovimientoStock.Tipo.AJUSTE.name());
+                ps.setInt(3, deltas[j]);
+                ps.setNull(4, Types.INTEGER);
+                ps.setTimestamp(5, ahora);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return total;
+            }
+        });
+    }
+
+    public void registrarFijacion(long productoId, int cantidad) {
+        if (!habilitado) {
+            return;
+        }
+        if (stockEnMemoria != null) {
+            stockEnMemoria.anotarMovimiento(productoId, true, 0, cantidad);
+            return;
+        }
+        jdbcTemplate.update(SQL_INSERTAR, productoId, MovimientoStock.Tipo.FIJACION.name(), 0, cantidad,
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    public List<MovimientoStock> movimientos(Long productoId, long after, int limit) {
+        return movimientoRepository.findByProductoIdAndIdGreaterThanOrderByIdAsc(productoId, after, PageRequest.of(0, limit));
+    }
+
+    // Último punto de control + movimientos posteriores, comparado con la cantidad vigente
+    public AuditoriaStock auditar(Long productoId, Integer cantidadActual) {
+        PuntoControlStock punto = puntoControlRepository.findFirstByProductoIdOrderByHastaMovimientoIdDesc(productoId);
+        long desde = punto != null ? punto.getHastaMovimientoId() : 0;
+        int cantidad = punto != null ? punto.getCantidad() : 0;
+        List<MovimientoStock> posteriores = movimientos(productoId, desde, MAX_MOVIMIENTOS_AUDITORIA);
+        for (MovimientoStock movimiento : posteriores) {
+            cantidad = aplicar(cantidad, movimiento.getTipo().name(), movimiento.getDelta(), movimiento.getCantidad());
+        }
+        return new AuditoriaStock(productoId, punto != null ? desde : null, punto != null ? punto.getCantidad() : 0,
+                posteriores.size(), cantidad, cantidadActual);
+    }
+
+    // Pliega los movimientos más antiguos que la retención en un punto de control por producto.
+    // Todos los puntos de una pasada comparten hasta_movimiento_id, así que la siguiente pasada
+    // empieza justo después. Si el borrado se interrumpe, los movimientos sobrantes quedan por
+    // debajo del punto de control y no se vuelven a contar.
+    public void compactar() {
+        if (!habilitado) {
+            return;
+        }
+        Timestamp corte = new Timestamp(System.currentTimeMillis() - retencionMs);
+        Long limite = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM inventario_movimiento WHERE creado < ?", Long.class, corte);
+        Long anterior = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(hasta_movimiento_id), 0) FROM inventario_checkpoint", Long.class);
+        if (limite == null || limite <= anterior) {
+            return;
+        }
+
+        LongIntMap acumulado = new LongIntMap();
+        LongIntMap conFijacion = new LongIntMap();
+        LongIntMap contados = new LongIntMap();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_PLEGAR, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setLong(1, anterior);
+            ps.setLong(2, limite);
+            return ps;
+        }, rs -> {
+            long productoId = rs.getLong(1);
+            String tipo = rs.getString(2);
+            int cantidad = rs.getInt(4);
+            Integer resultante = rs.wasNull() ? null : cantidad;
+            if (MovimientoStock.Tipo.FIJACION.name().equals(tipo)) {
+                conFijacion.put(productoId, 1);
+            }
+            acumulado.put(productoId, aplicar(acumulado.get(productoId, 0), tipo, rs.getInt(3), resultante));
+            contados.addTo(productoId, 1);
+        });
+
+        LongIntMap previos = new LongIntMap();
+        jdbcTemplate.query(SQL_ULTIMOS_PUNTOS, rs -> {
+            previos.put(rs.getLong(1), rs.getInt(2));
+        });
+        long[] productoIds = acumulado.sortedKeys();
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_PUNTO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                long productoId = productoIds[i];
+                int base = conFijacion.containsKey(productoId) ? 0 : previos.get(productoId, 0);
+                ps.setLong(1, productoId);
+                ps.setLong(2, limite);
+                ps.setInt(3, base + acumulado.get(productoId, 0));
+                ps.setInt(4, contados.get(productoId, 0));
+                ps.setTimestamp(5, ahora);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return productoIds.length;
+            }
+        }));
+
+        // Borrado por tramos para no retener bloqueos largos sobre la tabla
+        int borrados;
+        long total = 0;
+        do {
+            borrados = jdbcTemplate.update("DELETE FROM inventario_movimiento WHERE id <= ? LIMIT ?", limite, loteBorrado);
+            total += borrados;
+        } while (borrados == loteBorrado);
+        System.out.println("Compactación de movimientos: " + productoIds.length + " puntos de control, "
+                + total + " movimientos plegados hasta el id " + limite);
+    }
+
+    // La lanza el programador de Spring (ProgramacionConfig)
+    @Scheduled(initialDelayString = "${inventario.movimientos.compactacion-ms:3600000}",
+            fixedDelayString = "${inventario.movimientos.compactacion-ms:3600000}")
+    public void compactarSeguro() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            compactar();
+        } catch (RuntimeException e) {
+            System.out.println("Error compactando movimientos de stock: " + e.getMessage());
+        }
+    }
+
+    // Una FIJACION reinicia la cantidad; un AJUSTE suma su delta
+    private static int aplicar(int cantidad, String tipo, int delta, Integer resultante) {
+        if (MovimientoStock.Tipo.FIJACION.name().equals(tipo)) {
+            return resultante != null ? resultante : 0;
+        }
+        return cantidad + delta;
+    }
+}
@@ -0,0 +1,145 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.model.Reserva;
+import com.perfulandia.inventario.repository.ReservaRepository;
+import com.perfulandia.inventario.util.RuedaTemporizadores;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Reservas de stock con caducidad. Reservar descuenta el stock en el mismo UPDATE condicional que
+// un ajuste, así la comprobación y el descuento son una sola operación. Confirmar deja el stock
+// descontado; liberar o expirar lo devuelve. Las caducidades viven en una rueda de temporizadores,
+// nunca se recorre la tabla buscando reservas vencidas. El programador de Spring avanza la rueda cada
+// tick y las expiraciones corren en un hilo propio que se espera al parar, antes de cerrar el DataSource.
+@Service
+public class ReservaService {
+    // Si la BD falla al expirar, se reintenta pasado este tiempo
+    private static final long REINTENTO_EXPIRACION_MS = 30_000;
+
+    private final ReservaRepository repository;
+    private final InventarioService inventarioService;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlPorDefectoSegundos;
+    private final long ttlMaximoSegundos;
+    private final ConcurrentHashMap<Long, RuedaTemporizadores.Temporizador> temporizadores = new ConcurrentHashMap<>();
+    private final ExecutorService expiraciones = Executors.newSingleThreadExecutor();
+    private final RuedaTemporizadores rueda;
+
+    public ReservaService(ReservaRepository repository, InventarioService inventarioService,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${inventario.reserva.ttl-segundos:900}") long ttlPorDefectoSegundos,
+                          @Value("${inventario.reserva.ttl-max-segundos:3600}") long ttlMaximoSegundos,
+                          @Value("${inventario.reserva.tick-ms:100}") long tickMs,
+                          @Value("${inventario.reserva.ranuras:512}") int ranuras) {
+        this.repository = repository;
+        this.inventarioService = inventarioService;
+        this.transactionTemplate = transactionTemplate;
+        this.ttlPorDefectoSegundos = ttlPorDefectoSegundos;
+        this.ttlMaximoSegundos = ttlMaximoSegundos;
+        this.rueda = new RuedaTemporizadores(tickMs, ranuras, this::expirar, expiraciones);
+    }
+
+    // Tras un reinicio se vuelven a programar las reservas pendientes; las ya vencidas expiran en el primer tick
+    @PostConstruct
+    public void recuperarPendientes() {
+        List<Reserva> pendientes = repository.findByEstado(Reserva.Estado.PENDIENTE);
+        pendientes.forEach(this::programar);
+        System.out.println("Reservas pendientes reprogramadas: " + pendientes.size());
+    }
+
+    public Reserva findById(Long id) {
+        return repository.findById(id).orElse(null);
+    }
+
+    // null si el producto no existe o no hay stock suficiente
+    public Reserva reservar(Long productoId, int cantidad, Integer ttlSegundos) {
+        long ttl = ttlSegundos == null ? ttlPorDefectoSegundos : Math.max(1, Math.min(ttlSegundos, ttlMaximoSegundos));
+        Reserva reserva = transactionTemplate.execute(status -> {
+            AjusteStock ajuste = inventarioService.ajustarCantidad(productoId, -cantidad);
+            if (!ajuste.aplicado()) {
+                return null;
+            }
+            Date ahora = new Date();
+            Reserva nueva = new Reserva();
+            nueva.setProductoId(productoId);
+            nueva.setCantidad(cantidad);
+            nueva.setEstado(Reserva.Estado.PENDIENTE);
+            nueva.setCreada(ahora);
+            nueva.setExpira(new Date(ahora.getTime() + ttl * 1000));
+            return repository.save(nueva);
+        });
+        if (reserva != null) {
+            programar(reserva);
+        }
+        return reserva;
+    }
+
+    // Devuelven la reserva en su estado final (null si no existe); si no estaba pendiente no cambia nada
+    public Reserva confirmar(Long id) {
+        return cerrar(id, Reserva.Estado.CONFIRMADA);
+    }
+
+    public Reserva liberar(Long id) {
+        return cerrar(id, Reserva.Estado.LIBERADA);
+    }
+
+    @Scheduled(fixedRateString = "${inventario.reserva.tick-ms:100}")
+    public void avanzarRueda() {
+        rueda.avanzar();
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        rueda.close();
+        expiraciones.shutdown();
+        if (!expiraciones.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.out.println("Quedaron expiraciones de reservas sin terminar al parar");
+        }
+    }
+
+    private Reserva cerrar(Long id, Reserva.Estado nuevo) {
+        Reserva reserva = transactionTemplate.execute(status -> {
+            Reserva actual = repository.findById(id).orElse(null);
+            if (actual == null) {
+                return null;
+            }
+            if (repository.cambiarEstado(id, Reserva.Estado.PENDIENTE, nuevo) == 1 && nuevo != Reserva.Estado.CONFIRMADA) {
+                inventarioService.ajustarCantidad(actual.getProductoId(), actual.getCantidad());
+            }
+            return repository.findById(id).orElse(null);
+        });
+        RuedaTemporizadores.Temporizador temporizador = temporizadores.remove(id);
+        if (temporizador != null && reserva != null && reserva.getEstado() != Reserva.Estado.PENDIENTE) {
+            temporizador.cancelar();
+        }
+        return reserva;
+    }
+
+    private void programar(Reserva reserva) {
+        long retraso = reserva.getExpira().getTime() - System.currentTimeMillis();
+        temporizadores.put(reserva.getId(), rueda.programar(reserva.getId(), retraso));
+    }
+
+    // Se ejecuta en el hilo de expiraciones, fuera del que avanza la rueda
+    private void expirar(long id) {
+        temporizadores.remove(id);
+        try {
+            cerrar(id, Reserva.Estado.EXPIRADA);
+        } catch (RuntimeException e) {
+            System.out.println("Error expirando la reserva " + id + ": " + e.getMessage());
+            temporizadores.put(id, rueda.programar(id, REINTENTO_EXPIRACION_MS));
+        }
+    }
+}
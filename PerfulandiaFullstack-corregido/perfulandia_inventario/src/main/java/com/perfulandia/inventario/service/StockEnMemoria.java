@@ -0,0 +1,608 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.model.Inventario;
+import com.perfulandia.inventario.model.MovimientoStock;
+import com.perfulandia.inventario.util.DiarioStock;
+import com.perfulandia.inventario.util.LongIntMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Stock de todos los productos en memoria (modo write-behind, inventario.ledger.habilitado=true).
+// Los ajustes se validan y aplican bajo el cerrojo de la franja del producto y se vuelcan a MySQL
+// cada flush-ms en un batch JDBC. El stock vigente es la tabla más el WAL aún no volcado, así que
+// solo una instancia de inventario puede escribir la tabla. Dentro de una transacción, el ajuste se
+// escribe en el WAL y se fuerza a disco antes de que MySQL confirme (con él, las claves de
+// EventosProcesados): una caída no puede dejar un evento marcado como procesado sin su descuento.
+// Si la caída llega entre el fsync y el commit, el descuento queda en el WAL sin la clave y el evento
+// se vuelve a aplicar al reentregarse: el error va hacia menos stock, nunca hacia vender de más.
+// Si la transacción hace rollback se deshace el ajuste y se anota la cantidad restaurada.
+// Los movimientos del libro de stock van al WAL al confirmarse, sin fsync propio (lo cubre el
+// siguiente), y se insertan en lote en la transacción del volcado.
+@Component
+@ConditionalOnProperty(name = "inventario.ledger.habilitado", havingValue = "true")
+// UbicacionService marca al arrancar los productos con ubicaciones antes de que se lean aquí
+@DependsOn("ubicacionService")
+public class StockEnMemoria {
+    // Marca de producto eliminado; las cantidades válidas nunca son negativas
+    private static final int AUSENTE = -1;
+    // Resultado interno de un ajuste sobre un producto que aún no está en memoria
+    private static final AjusteStock SIN_CARGAR = new AjusteStock(0, null);
+    private static final String SQL_CARGA = "SELECT id, producto_id, cantidad_disponible, ubicacion, con_ubicaciones FROM inventario";
+    private static final String SQL_VOLCADO = "UPDATE inventario SET cantidad_disponible = ? WHERE producto_id = ?";
+    // Último segmento del WAL cuyos movimientos ya están en inventario_movimiento; se actualiza en la
+    // transacción del volcado, así una caída antes de borrar los segmentos no los inserta dos veces
+    private static final String SQL_VOLCADO_HASTA = "UPDATE inventario_wal_volcado SET segmento = ? WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler programador;
+    private final DiarioStock diario;
+    private final long flushMs;
+
+    // Franjas: cada una con su cerrojo, sus cantidades y los productos pendientes de volcar
+    private final ReentrantLock[] cerrojos;
+    private final LongIntMap[] cantidades;
+    private final LongIntMap[] sucios;
+    private final int mascara;
+
+    // Datos que no cambian con los ajustes (id, ubicación), para responder sin ir a la BD
+    private final ConcurrentHashMap<Long, Inventario> fichas = new ConcurrentHashMap<>();
+    // Productos con ubicaciones; se cambia y se consulta con el cerrojo de la franja del producto
+    private final Set<Long> conUbicaciones = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock volcado = new ReentrantLock();
+    private final List<Path> segmentosPendientes = new ArrayList<>();
+    // Movimientos escritos en el segmento actual (con el monitor de diario) y los de segmentos ya
+    // rotados que aún no se han insertado (con el cerrojo de volcado)
+    private List<DiarioStock.Movimiento> movimientos = new ArrayList<>();
+    private final List<DiarioStock.Movimiento> movimientosPendientes = new ArrayList<>();
+    // Volcado periódico en el programador de Spring. No es un @Scheduled: al cerrar se cancela sin
+    // interrumpir, porque interrumpir un hilo que escribe en el WAL cierra su FileChannel
+    private ScheduledFuture<?> volcadoPeriodico;
+    // Registros escritos en el WAL y hasta cuál está forzado a disco (ambos con el monitor de diario)
+    private long escritos;
+    private long sincronizados;
+
+    public StockEnMemoria(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, TaskScheduler programador,
+                          @Value("${inventario.ledger.directorio:./inventario-wal}") String directorio,
+                          @Value("${inventario.ledger.flush-ms:200}") long flushMs,
+                          @Value("${inventario.ledger.franjas:64}") int franjas) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.programador = programador;
+        this.diario = new DiarioStock(Paths.get(directorio));
+        this.flushMs = flushMs;
+        int n = Integer.highestOneBit(Math.max(1, franjas - 1)) << 1;
+        this.mascara = n - 1;
+        this.cerrojos = new ReentrantLock[n];
+        this.cantidades = new LongIntMap[n];
+        this.sucios = new LongIntMap[n];
+        for (int i = 0; i < n; i++) {
+            cerrojos[i] = new ReentrantLock();
+            cantidades[i] = new LongIntMap();
+            sucios[i] = new LongIntMap();
+        }
+    }
+
+    // Carga la tabla y reaplica encima el WAL que no llegó a volcarse antes de la última parada.
+    // Se ejecuta antes de que arranquen los listeners de RabbitMQ.
+    @PostConstruct
+    public void iniciar() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS inventario_wal_volcado (id INT PRIMARY KEY, segmento BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT IGNORE INTO inventario_wal_volcado (id, segmento) VALUES (1, 0)");
+        Long volcadoHasta = jdbcTemplate.queryForObject("SELECT segmento FROM inventario_wal_volcado WHERE id = 1", Long.class);
+        jdbcTemplate.query(SQL_CARGA, rs -> {
+            Inventario ficha = new Inventario();
+            ficha.setId(rs.getLong("id"));
+            ficha.setProductoId(rs.getLong("producto_id"));
+            ficha.setUbicacion(rs.getString("ubicacion"));
+            fichas.put(ficha.getProductoId(), ficha);
+            int franja = franja(ficha.getProductoId());
+            cantidades[franja].put(ficha.getProductoId(), rs.getInt("cantidad_disponible"));
+            if (rs.getBoolean("con_ubicaciones")) {
+                conUbicaciones.add(ficha.getProductoId());
+            }
+        });
+        int[] reaplicados = {0};
+        diario.recuperar((productoId, cantidad) -> {
+            int franja = franja(productoId);
+            cantidades[franja].put(productoId, cantidad < 0 ? AUSENTE : cantidad);
+            sucios[franja].put(productoId, 1);
+            reaplicados[0]++;
+        }, volcadoHasta != null ? volcadoHasta : 0, movimientosPendientes::add);
+        segmentosPendientes.addAll(diario.abrir());
+        System.out.println("Stock en memoria: " + fichas.size() + " productos cargados, "
+                + reaplicados[0] + " registros del WAL reaplicados, " + movimientosPendientes.size()
+                + " movimientos por insertar");
+        volcadoPeriodico = programador.scheduleWithFixedDelay(this::volcarSeguro,
+                Instant.now().plusMillis(flushMs), Duration.ofMillis(flushMs));
+    }
+
+    // Ajusta el total del producto, tenga o no ubicaciones
+    public AjusteStock ajustar(long productoId, int delta) {
+        AjusteStock ajuste = ajustar(productoId, delta, false);
+        return ajuste != null ? ajuste : new AjusteStock(0, null);
+    }
+
+    // null si el producto tiene ubicaciones: su ajuste se reparte antes entre ellas
+    public AjusteStock ajustarSinUbicaciones(long productoId, int delta) {
+        return ajustar(productoId, delta, true);
+    }
+
+    private AjusteStock ajustar(long productoId, int delta, boolean sinUbicaciones) {
+        AjusteStock ajuste = intentarAjuste(productoId, delta, sinUbicaciones);
+        if (ajuste == SIN_CARGAR && cargar(productoId)) {
+            ajuste = intentarAjuste(productoId, delta, sinUbicaciones);
+        }
+        if (ajuste == SIN_CARGAR) {
+            return new AjusteStock(0, null);
+        }
+        if (ajuste == null) {
+            return null;
+        }
+        if (ajuste.aplicado()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                pendientes().deltas.addTo(productoId, delta);
+            } else {
+                sincronizarHasta(cerrar(productoId, 0));
+            }
+        }
+        return ajuste;
+    }
+
+    // SIN_CARGAR si el producto no está en memoria; null si tiene ubicaciones y sinUbicaciones
+    private AjusteStock intentarAjuste(long productoId, int delta, boolean sinUbicaciones) {
+        int franja = franja(productoId);
+        ReentrantLock cerrojo = cerrojos[franja];
+        cerrojo.lock();
+        try {
+            int actual = cantidades[franja].get(productoId, AUSENTE);
+            if (actual == AUSENTE) {
+                return SIN_CARGAR;
+            }
+            if (sinUbicaciones && conUbicaciones.contains(productoId)) {
+                return null;
+            }
+            long nueva = (long) actual + delta;
+            if (nueva < 0 || nueva > Integer.MAX_VALUE) {
+                return new AjusteStock(0, null);
+            }
+            cantidades[franja].put(productoId, (int) nueva);
+            return new AjusteStock(1, (int) nueva);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public Inventario consultar(long productoId) {
+        Inventario inventario = copiar(productoId);
+        if (inventario == null && cargar(productoId)) {
+            inventario = copiar(productoId);
+        }
+        return inventario;
+    }
+
+    // Cantidad en memoria o null si el producto no está cargado
+    public Integer cantidad(long productoId) {
+        int franja = franja(productoId);
+        cerrojos[franja].lock();
+        try {
+            int cantidad = cantidades[franja].get(productoId, AUSENTE);
+            return cantidad == AUSENTE ? null : cantidad;
+        } finally {
+            cerrojos[franja].unlock();
+        }
+    }
+
+    // Primera ubicación del producto, con su fila de inventario bloqueada: desde aquí sus ajustes se
+    // reparten entre ubicaciones y el total pasa a ser su suma. Si la transacción se deshace se
+    // restaura la cantidad anterior (mientras, los ajustes del producto esperan a sus ubicaciones).
+    public void pasarAUbicaciones(long productoId, int total) {
+        if (cantidad(productoId) == null) {
+            cargar(productoId);
+        }
+        int franja = franja(productoId);
+        int anterior;
+        cerrojos[franja].lock();
+        try {
+            anterior = cantidades[franja].get(productoId, AUSENTE);
+            conUbicaciones.add(productoId);
+            cantidades[franja].put(productoId, total);
+        } finally {
+            cerrojos[franja].unlock();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cerrar(productoId, 0);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    cerrojos[franja].lock();
+                    try {
+                        conUbicaciones.remove(productoId);
+                        cantidades[franja].put(productoId, anterior);
+                    } finally {
+                        cerrojos[franja].unlock();
+                    }
+                }
+                cerrar(productoId, 0);
+            }
+        });
+    }
+
+    // Tras guardar la entidad por JPA (alta o PUT/PATCH), al confirmar la transacción. Con la cantidad
+    // que leyó quien la modificó se aplica solo la diferencia, así no se pisan los ajustes que llegaron
+    // entre medias; sin ella (alta) la cantidad guardada pasa a ser la vigente.
+    public void registrar(Inventario guardado, Integer leida) {
+        long productoId = guardado.getProductoId();
+        int cantidad = guardado.getCantidadDisponible() != null ? guardado.getCantidadDisponible() : 0;
+        Inventario ficha = ficha(guardado);
+        trasCommit(() -> {
+            fichas.put(productoId, ficha);
+            int franja = franja(productoId);
+            cerrojos[franja].lock();
+            try {
+                int actual = cantidades[franja].get(productoId, AUSENTE);
+                int nueva = leida == null || actual == AUSENTE ? cantidad : acotar((long) actual + cantidad - leida);
+                anotar(productoId, nueva);
+                cantidades[franja].put(productoId, nueva);
+                sucios[franja].put(productoId, 1);
+            } finally {
+                cerrojos[franja].unlock();
+            }
+        });
+    }
+
+    public void olvidar(long productoId) {
+        trasCommit(() -> {
+            fichas.remove(productoId);
+            int franja = franja(productoId);
+            cerrojos[franja].lock();
+            try {
+                anotar(productoId, AUSENTE);
+                cantidades[franja].put(productoId, AUSENTE);
+                conUbicaciones.remove(productoId);
+            } finally {
+                cerrojos[franja].unlock();
+            }
+        });
+    }
+
+    // Lo llama MovimientoService en vez de insertar la fila: dentro de una transacción el movimiento
+    // se anota en el WAL al confirmarse (con rollback se descarta) y el volcado lo inserta en lote
+    public void anotarMovimiento(long productoId, boolean fijacion, int delta, Integer cantidad) {
+        DiarioStock.Movimiento movimiento = new DiarioStock.Movimiento(productoId, fijacion, delta, cantidad,
+                System.currentTimeMillis());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendientes().movimientos.add(movimiento);
+        } else {
+            anotar(movimiento);
+        }
+    }
+
+    // Vuelca a MySQL la cantidad actual de cada producto modificado desde el último volcado.
+    // Con todas las franjas bloqueadas se toma la foto y se rota el WAL, así el segmento cerrado
+    // contiene exactamente los cambios de la foto y puede borrarse cuando el batch confirma.
+    public void volcar() {
+        volcado.lock();
+        try {
+            LongIntMap foto = new LongIntMap();
+            Path cerrado = null;
+            for (ReentrantLock cerrojo : cerrojos) {
+                cerrojo.lock();
+            }
+            try {
+                for (int i = 0; i <= mascara; i++) {
+                    LongIntMap franja = cantidades[i];
+                    sucios[i].forEach((productoId, marca) -> {
+                        int cantidad = franja.get(productoId, AUSENTE);
+                        if (cantidad != AUSENTE) {
+                            foto.put(productoId, cantidad);
+                        }
+                    });
+                    sucios[i].clear();
+                }
+                synchronized (diario) {
+                    diario.sincronizar();
+                    sincronizados = escritos;
+                    if (!foto.isEmpty() || !segmentosPendientes.isEmpty() || !movimientos.isEmpty()) {
+                        cerrado = diario.rotar();
+                        movimientosPendientes.addAll(movimientos);
+                        movimientos = new ArrayList<>();
+                    }
+                }
+            } finally {
+                for (int i = cerrojos.length - 1; i >= 0; i--) {
+                    cerrojos[i].unlock();
+                }
+            }
+            if (cerrado == null) {
+                return;
+            }
+            segmentosPendientes.add(cerrado);
+
+            long[] productoIds = foto.sortedKeys();
+            long hasta = DiarioStock.numero(cerrado);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    escribir(productoIds, foto);
+                    insertarMovimientos(movimientosPendientes);
+                    jdbcTemplate.update(SQL_VOLCADO_HASTA, hasta);
+                });
+            } catch (RuntimeException e) {
+                // La memoria sigue siendo correcta: se reintenta en el siguiente volcado
+                System.out.println("Error volcando stock a MySQL: " + e.getMessage());
+                marcarSucios(productoIds);
+                return;
+            }
+            movimientosPendientes.clear();
+            diario.borrar(segmentosPendientes);
+            segmentosPendientes.clear();
+        } finally {
+            volcado.unlock();
+        }
+    }
+
+    // Se destruye antes que el DataSource. El último volcado espera (cerrojo de volcado) al periódico en curso
+    @PreDestroy
+    public void detener() throws IOException {
+        if (volcadoPeriodico != null) {
+            volcadoPeriodico.cancel(false);
+        }
+        volcar();
+        synchronized (diario) {
+            diario.close();
+        }
+    }
+
+    private void volcarSeguro() {
+        try {
+            volcar();
+        } catch (RuntimeException e) {
+            System.out.println("Error en el volcado periódico del stock: " + e.getMessage());
+        }
+    }
+
+    private void escribir(long[] productoIds, LongIntMap foto) {
+        jdbcTemplate.batchUpdate(SQL_VOLCADO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, foto.get(productoIds[i], 0));
+                ps.setLong(2, productoIds[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return productoIds.length;
+            }
+        });
+    }
+
+    private void insertarMovimientos(List<DiarioStock.Movimiento> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(MovimientoService.SQL_INSERTAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DiarioStock.Movimiento movimiento = lote.get(i);
+                ps.setLong(1, movimiento.productoId());
+                ps.setString(2, (movimiento.fijacion() ? MovimientoStock.Tipo.FIJACION : MovimientoStock.Tipo.AJUSTE).name());
+                ps.setInt(3, movimiento.delta());
+                if (movimiento.cantidad() != null) {
+                    ps.setInt(4, movimiento.cantidad());
+                } else {
+                    ps.setNull(4, Types.INTEGER);
+                }
+                ps.setTimestamp(5, new Timestamp(movimiento.creado()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lote.size();
+            }
+        });
+    }
+
+    private void marcarSucios(long[] productoIds) {
+        for (long productoId : productoIds) {
+            int franja = franja(productoId);
+            cerrojos[franja].lock();
+            try {
+                sucios[franja].put(productoId, 1);
+            } finally {
+                cerrojos[franja].unlock();
+            }
+        }
+    }
+
+    // Producto creado fuera de este proceso después del arranque: se lee una vez de la BD
+    private boolean cargar(long productoId) {
+        List<Inventario> filas = jdbcTemplate.query(SQL_CARGA + " WHERE producto_id = ?", (rs, i) -> {
+            Inventario inventario = new Inventario();
+            inventario.setId(rs.getLong("id"));
+            inventario.setProductoId(rs.getLong("producto_id"));
+            inventario.setCantidadDisponible(rs.getInt("cantidad_disponible"));
+            inventario.setUbicacion(rs.getString("ubicacion"));
+            if (rs.getBoolean("con_ubicaciones")) {
+                conUbicaciones.add(productoId);
+            }
+            return inventario;
+        }, productoId);
+        if (filas.isEmpty()) {
+            return false;
+        }
+        Inventario fila = filas.get(0);
+        int franja = franja(productoId);
+        cerrojos[franja].lock();
+        try {
+            if (cantidades[franja].get(productoId, AUSENTE) == AUSENTE) {
+                cantidades[franja].put(productoId, fila.getCantidadDisponible());
+            }
+            fichas.putIfAbsent(productoId, ficha(fila));
+        } finally {
+            cerrojos[franja].unlock();
+        }
+        return true;
+    }
+
+    private Inventario copiar(long productoId) {
+        Inventario ficha = fichas.get(productoId);
+        Integer cantidad = cantidad(productoId);
+        if (ficha == null || cantidad == null) {
+            return null;
+        }
+        Inventario copia = ficha(ficha);
+        copia.setCantidadDisponible(cantidad);
+        return copia;
+    }
+
+    private static Inventario ficha(Inventario origen) {
+        Inventario ficha = new Inventario();
+        ficha.setId(origen.getId());
+        ficha.setProductoId(origen.getProductoId());
+        ficha.setUbicacion(origen.getUbicacion());
+        return ficha;
+    }
+
+    // Cierra un ajuste: si la transacción se deshizo, correccion devuelve su delta (sin guarda, otro
+    // ajuste pudo consumir entre medias). Después anota la cantidad vigente en el WAL y la marca para el
+    // volcado. Devuelve el número del registro escrito (0 si no se escribió ninguno).
+    private long cerrar(long productoId, int correccion) {
+        int franja = franja(productoId);
+        cerrojos[franja].lock();
+        try {
+            int actual = cantidades[franja].get(productoId, AUSENTE);
+            if (actual == AUSENTE) {
+                return 0;
+            }
+            if (correccion != 0) {
+                long corregida = (long) actual + correccion;
+                if (corregida < 0) {
+                    System.out.println("Rollback del producto " + productoId + ": faltan " + (-corregida)
+                            + " unidades para deshacer el ajuste, la cantidad queda en 0");
+                }
+                actual = acotar(corregida);
+                cantidades[franja].put(productoId, actual);
+            }
+            long registro = anotar(productoId, actual);
+            sucios[franja].put(productoId, 1);
+            return registro;
+        } finally {
+            cerrojos[franja].unlock();
+        }
+    }
+
+    // fsync agrupado: quien llega cuando otro ya forzó sus registros no vuelve a forzar
+    private void sincronizarHasta(long registro) {
+        synchronized (diario) {
+            if (sincronizados < registro) {
+                diario.sincronizar();
+                sincronizados = escritos;
+            }
+        }
+    }
+
+    private Pendientes pendientes() {
+        Pendientes pendientes = (Pendientes) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            pendientes = new Pendientes();
+            TransactionSynchronizationManager.bindResource(this, pendientes);
+            TransactionSynchronizationManager.registerSynchronization(pendientes);
+        }
+        return pendientes;
+    }
+
+    private static void trasCommit(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
+    private static int acotar(long cantidad) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, cantidad));
+    }
+
+    // Se llama con el cerrojo de la franja tomado, junto con el cambio en memoria
+    private long anotar(long productoId, int cantidad) {
+        synchronized (diario) {
+            diario.escribir(productoId, cantidad);
+            return ++escritos;
+        }
+    }
+
+    private void anotar(DiarioStock.Movimiento movimiento) {
+        synchronized (diario) {
+            diario.escribir(movimiento);
+            movimientos.add(movimiento);
+            escritos++;
+        }
+    }
+
+    private int franja(long productoId) {
+        long h = productoId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+
+    // Deltas ya aplicados en memoria por la transacción en curso, agrupados por producto, y los
+    // movimientos que se anotarán si se confirma
+    private final class Pendientes implements TransactionSynchronization {
+        private final LongIntMap deltas = new LongIntMap();
+        private final List<DiarioStock.Movimiento> movimientos = new ArrayList<>();
+
+        // Antes del commit de MySQL: las cantidades al WAL y a disco. Si falla, la transacción se deshace
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            long[] ultimo = {0};
+            deltas.forEach((productoId, delta) -> ultimo[0] = Math.max(ultimo[0], cerrar(productoId, 0)));
+            sincronizarHasta(ultimo[0]);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(StockEnMemoria.this);
+            if (status == STATUS_ROLLED_BACK) {
+                // Se devuelve el delta y se anota la cantidad restaurada
+                deltas.forEach((productoId, delta) -> cerrar(productoId, -delta));
+            } else if (status == STATUS_COMMITTED) {
+                movimientos.forEach(StockEnMemoria.this::anotar);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.Inventario;
+import com.perfulandia.inventario.util.LongIntMap;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Difusión de cambios de stock por SSE. Los cambios se acumulan (última cantidad por producto) y
+// cada intervalo-ms se envía a cada suscriptor un único evento "stock" con los productos que le
+// interesan. Un cliente lento no acumula eventos: sus cambios pendientes se fusionan y, si sigue
+// atascado durante max-ticks-atascado intervalos, se le desconecta. La difusión la lanza el programador
+// de Spring; los envíos van a un pool propio que se espera al parar.
+@Service
+public class StockEventos {
+    // Cantidad aún desconocida (ajuste en batch): se lee en bloque al difundir
+    private static final int DESCONOCIDA = -1;
+
+    private final ObjectProvider<InventarioService> inventarioService;
+    private final long timeoutMs;
+    private final int maxTicksAtascado;
+    private final long latidoMs;
+    private final List<Suscriptor> suscriptores = new CopyOnWriteArrayList<>();
+    private final ExecutorService envios;
+    private LongIntMap pendientes = new LongIntMap();
+
+    public StockEventos(ObjectProvider<InventarioService> inventarioService,
+                        @Value("${inventario.stream.timeout-ms:1800000}") long timeoutMs,
+                        @Value("${inventario.stream.max-ticks-atascado:20}") int maxTicksAtascado,
+                        @Value("${inventario.stream.latido-ms:15000}") long latidoMs,
+                        @Value("${inventario.stream.hilos-envio:4}") int hilosEnvio) {
+        this.inventarioService = inventarioService;
+        this.timeoutMs = timeoutMs;
+        this.maxTicksAtascado = maxTicksAtascado;
+        this.latidoMs = latidoMs;
+        this.envios = Executors.newFixedThreadPool(hilosEnvio);
+    }
+
+    // productoIds vacío = todos los productos. El primer evento trae la foto actual de los pedidos.
+    public SseEmitter suscribir(Collection<Long> productoIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        LongIntMap filtro = null;
+        if (!productoIds.isEmpty()) {
+            filtro = new LongIntMap(productoIds.size());
+            for (Long productoId : productoIds) {
+                filtro.put(productoId, 1);
+            }
+        }
+        Suscriptor suscriptor = new Suscriptor(emitter, filtro);
+        emitter.onCompletion(() -> suscriptores.remove(suscriptor));
+        emitter.onTimeout(() -> suscriptores.remove(suscriptor));
+        emitter.onError(e -> suscriptores.remove(suscriptor));
+        if (!productoIds.isEmpty()) {
+            for (Inventario inventario : inventarioService.getObject().findByProductoIds(productoIds)) {
+                suscriptor.pendiente.put(inventario.getProductoId(), inventario.getCantidadDisponible());
+            }
+        }
+        suscriptores.add(suscriptor);
+        return emitter;
+    }
+
+    public boolean hayInteresados() {
+        return !suscriptores.isEmpty();
+    }
+
+    // Registra la nueva cantidad (null si no se conoce); dentro de una transacción, solo tras el commit
+    public void publicar(long productoId, Integer cantidad) {
+        if (suscriptores.isEmpty()) {
+            return;
+        }
+        int valor = cantidad != null ? cantidad : DESCONOCIDA;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acumular(productoId, valor);
+                }
+            });
+        } else {
+            acumular(productoId, valor);
+        }
+    }
+
+    // Sin envíos nuevos; se cierran los emisores y se esperan los envíos en curso
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        envios.shutdown();
+        suscriptores.forEach(s -> s.emitter.complete());
+        if (!envios.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.out.println("Quedaron envíos de stock sin terminar al parar");
+        }
+    }
+
+    private synchronized void acumular(long productoId, int cantidad) {
+        pendientes.put(productoId, cantidad);
+    }
+
+    private synchronized LongIntMap tomarPendientes() {
+        LongIntMap cambios = pendientes;
+        pendientes = new LongIntMap();
+        return cambios;
+    }
+
+    @Scheduled(initialDelayString = "${inventario.stream.intervalo-ms:500}",
+            fixedDelayString = "${inventario.stream.intervalo-ms:500}")
+    public void difundirSeguro() {
+        try {
+            difundir();
+        } catch (RuntimeException e) {
+            System.out.println("Error difundiendo cambios de stock: " + e.getMessage());
+        }
+    }
+
+    private void difundir() {
+        LongIntMap cambios = tomarPendientes();
+        resolverDesconocidas(cambios);
+        long ahora = System.currentTimeMillis();
+        for (Suscriptor suscriptor : suscriptores) {
+            boolean enviar;
+            synchronized (suscriptor) {
+                cambios.forEach((productoId, cantidad) -> {
+                    if (cantidad != DESCONOCIDA && (suscriptor.filtro == null || suscriptor.filtro.containsKey(productoId))) {
+                        suscriptor.pendiente.put(productoId, cantidad);
+                    }
+                });
+                if (suscriptor.enviando) {
+                    if (++suscriptor.ticksAtascado > maxTicksAtascado) {
+                        suscriptores.remove(suscriptor);
+                        suscriptor.emitter.complete();
+                    }
+                    continue;
+                }
+                enviar = !suscriptor.pendiente.isEmpty() || ahora - suscriptor.ultimoEnvio >= latidoMs;
+                suscriptor.enviando = enviar;
+            }
+            if (enviar) {
+                envios.execute(() -> enviar(suscriptor));
+            }
+        }
+    }
+
+    private void resolverDesconocidas(LongIntMap cambios) {
+        List<Long> desconocidas = new ArrayList<>();
+        cambios.forEach((productoId, cantidad) -> {
+            if (cantidad == DESCONOCIDA) {
+                desconocidas.add(productoId);
+            }
+        });
+        if (desconocidas.isEmpty() || suscriptores.isEmpty()) {
+            return;
+        }
+        for (Inventario inventario : inventarioService.getObject().findByProductoIds(desconocidas)) {
+            cambios.put(inventario.getProductoId(), inventario.getCantidadDisponible());
+        }
+    }
+
+    private void enviar(Suscriptor suscriptor) {
+        LongIntMap lote;
+        synchronized (suscriptor) {
+            lote = suscriptor.pendiente;
+            suscriptor.pendiente = new LongIntMap();
+        }
+        try {
+            if (lote.isEmpty()) {
+                suscriptor.emitter.send(SseEmitter.event().comment("latido"));
+            } else {
+                Map<Long, Integer> datos = new LinkedHashMap<>();
+                for (long productoId : lote.sortedKeys()) {
+                    datos.put(productoId, lote.get(productoId, 0));
+                }
+                suscriptor.emitter.send(SseEmitter.event().name("stock").data(datos, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            suscriptores.remove(suscriptor);
+            suscriptor.emitter.completeWithError(e);
+        } finally {
+            synchronized (suscriptor) {
+                suscriptor.enviando = false;
+                suscriptor.ticksAtascado = 0;
+                suscriptor.ultimoEnvio = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static final class Suscriptor {
+        private final SseEmitter emitter;
+        // null = todos los productos
+        private final LongIntMap filtro;
+        private LongIntMap pendiente = new LongIntMap();
+        private boolean enviando;
+        private int ticksAtascado;
+        private long ultimoEnvio;
+
+        private Suscriptor(SseEmitter emitter, LongIntMap filtro) {
+            this.emitter = emitter;
+            this.filtro = filtro;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.AjusteStock;
+import com.perfulandia.inventario.repository.InventarioRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Stock repartido en N buckets (inventario_bucket) para los productos con más contención: cada
+// descuento bloquea solo el bucket elegido al azar, no la fila única del producto. Si ese bucket no
+// alcanza, se bloquean todos, se comprueba el total y se reparte de nuevo. La fila de inventario
+// guarda el total del último reparto; la cantidad vigente es la suma de los buckets.
+@Component
+public class StockFraccionado {
+
+    private final InventarioRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final int buckets;
+    private final long cacheNanos;
+    private final List<Long> configurados;
+    private final Set<Long> fraccionados = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, Lectura> lecturas = new ConcurrentHashMap<>();
+
+    public StockFraccionado(InventarioRepository repository, TransactionTemplate transactionTemplate,
+                            @Value("${inventario.fraccionado.productos:}") List<Long> configurados,
+                            @Value("${inventario.fraccionado.buckets:8}") int buckets,
+                            @Value("${inventario.fraccionado.cache-ms:250}") long cacheMs) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.configurados = configurados;
+        this.buckets = Math.max(2, buckets);
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMs);
+    }
+
+    // Reparte en buckets los productos configurados que aún no lo estaban (antes de arrancar los listeners)
+    @PostConstruct
+    public void iniciar() {
+        fraccionados.addAll(repository.productosFraccionados());
+        for (Long productoId : configurados) {
+            if (!fraccionados.contains(productoId)) {
+                fraccionar(productoId);
+            }
+        }
+    }
+
+    public boolean esFraccionado(Long productoId) {
+        return productoId != null && fraccionados.contains(productoId);
+    }
+
+    public void fraccionar(Long productoId) {
+        Boolean creado = transactionTemplate.execute(status -> {
+            Integer total = repository.bloquearCantidad(productoId);
+            if (total == null) {
+                return false;
+            }
+            // Buckets y ubicaciones son dos formas excluyentes de repartir el stock
+            if (Boolean.TRUE.equals(repository.conUbicaciones(productoId))) {
+                System.out.println("El producto " + productoId + " tiene ubicaciones, no se reparte en buckets");
+                return false;
+            }
+            if (!repository.bloquearBuckets(productoId).isEmpty()) {
+                return true;
+            }
+            for (int b = 0; b < buckets; b++) {
+                repository.crearBucket(productoId, b, parte(total, b, buckets));
+            }
+            return true;
+        });
+        if (Boolean.TRUE.equals(creado)) {
+            fraccionados.add(productoId);
+        }
+    }
+
+    // Se llama dentro de la transacción de InventarioService. La cantidad devuelta sale de la lectura
+    // cacheada más el delta (es orientativa, como la de cantidad()); solo se suman los buckets cuando
+    // la lectura ha caducado, así el descuento no vuelve a leer todos los buckets
+    public AjusteStock ajustar(Long productoId, int delta) {
+        int bucket = ThreadLocalRandom.current().nextInt(buckets);
+        if (repository.ajustarBucket(productoId, bucket, delta) == 1) {
+            Lectura ajustada = lecturas.computeIfPresent(productoId, (id, lectura) ->
+                    System.nanoTime() - lectura.instante < cacheNanos
+                            ? new Lectura(Math.max(0, lectura.cantidad + delta), lectura.instante) : null);
+            return new AjusteStock(1, ajustada != null ? ajustada.cantidad : leerYGuardar(productoId));
+        }
+        return rebalancear(productoId, delta);
+    }
+
+    // Cantidad vigente con una caché corta: evita sumar los buckets en cada lectura
+    public int cantidad(Long productoId) {
+        Lectura lectura = lecturas.get(productoId);
+        if (lectura != null && System.nanoTime() - lectura.instante < cacheNanos) {
+            return lectura.cantidad;
+        }
+        return leerYGuardar(productoId);
+    }
+
+    // PUT/POST de una cantidad absoluta: se reparte entre los buckets
+    public void fijar(Long productoId, int total) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Integer> actuales = repository.bloquearBuckets(productoId);
+            repartir(productoId, actuales.size(), total);
+        });
+        lecturas.put(productoId, new Lectura(total, System.nanoTime()));
+    }
+
+    public void olvidar(Long productoId) {
+        transactionTemplate.executeWithoutResult(status -> repository.borrarBuckets(productoId));
+        fraccionados.remove(productoId);
+        lecturas.remove(productoId);
+    }
+
+    private AjusteStock rebalancear(Long productoId, int delta) {
+        List<Integer> actuales = repository.bloquearBuckets(productoId);
+        long total = delta;
+        for (Integer cantidad : actuales) {
+            total += cantidad;
+        }
+        if (actuales.isEmpty() || total < 0 || total > Integer.MAX_VALUE) {
+            return new AjusteStock(0, null);
+        }
+        repartir(productoId, actuales.size(), (int) total);
+        repository.fijarCantidad(productoId, (int) total);
+        lecturas.put(productoId, new Lectura((int) total, System.nanoTime()));
+        return new AjusteStock(1, (int) total);
+    }
+
+    private void repartir(Long productoId, int n, int total) {
+        for (int b = 0; b < n; b++) {
+            repository.fijarBucket(productoId, b, parte(total, b, n));
+        }
+    }
+
+    private int leerYGuardar(Long productoId) {
+        int cantidad = (int) repository.sumarBuckets(productoId);
+        lecturas.put(productoId, new Lectura(cantidad, System.nanoTime()));
+        return cantidad;
+    }
+
+    // Reparto uniforme; el resto va a los primeros buckets
+    private static int parte(int total, int bucket, int n) {
+        return total / n + (bucket < total % n ? 1 : 0);
+    }
+
+    private record Lectura(int cantidad, long instante) {
+    }
+}
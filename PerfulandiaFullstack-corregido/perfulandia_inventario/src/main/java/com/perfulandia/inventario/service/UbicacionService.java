@@ -0,0 +1,212 @@
+package com.perfulandia.inventario.service;
+
+import com.perfulandia.inventario.model.Almacen;
+import com.perfulandia.inventario.model.StockUbicacion;
+import com.perfulandia.inventario.model.UbicacionCercana;
+import com.perfulandia.inventario.repository.AlmacenRepository;
+import com.perfulandia.inventario.repository.InventarioRepository;
+import com.perfulandia.inventario.repository.StockUbicacionRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stock por almacén. Los cambios de filas se hacen dentro de la transacción de InventarioService,
+// que mantiene el total del producto en la misma transacción. Si un producto tiene ubicaciones lo
+// decide la marca con_ubicaciones de su fila de inventario; la foto en memoria de sus ubicaciones
+// (se refresca tras cada commit) sirve para la búsqueda del almacén más cercano y como pista.
+@Service
+public class UbicacionService {
+    private static final double RADIO_TIERRA_KM = 6371.0;
+
+    private final AlmacenRepository almacenRepository;
+    private final StockUbicacionRepository repository;
+    private final InventarioRepository inventarioRepository;
+    private final Map<String, Almacen> almacenes = new ConcurrentHashMap<>();
+    private final Map<Long, Existencia[]> porProducto = new ConcurrentHashMap<>();
+
+    public UbicacionService(AlmacenRepository almacenRepository, StockUbicacionRepository repository,
+                            InventarioRepository inventarioRepository) {
+        this.almacenRepository = almacenRepository;
+        this.repository = repository;
+        this.inventarioRepository = inventarioRepository;
+    }
+
+    @PostConstruct
+    public void cargar() {
+        int marcados = inventarioRepository.marcarConUbicaciones();
+        if (marcados > 0) {
+            System.out.println("Productos con ubicaciones marcados al arrancar: " + marcados);
+        }
+        almacenRepository.findAll().forEach(a -> almacenes.put(a.getCodigo(), a));
+        Map<Long, List<Existencia>> agrupadas = new ConcurrentHashMap<>();
+        for (StockUbicacion s : repository.findAll()) {
+            agrupadas.computeIfAbsent(s.getProductoId(), p -> new ArrayList<>())
+                    .add(new Existencia(s.getAlmacen(), s.getCantidad()));
+        }
+        agrupadas.forEach((productoId, lista) -> porProducto.put(productoId, lista.toArray(new Existencia[0])));
+    }
+
+    // Solo una pista: la caché de esta réplica va por detrás de los commits (propios y de otras
+    // réplicas). Un true adelanta el camino por ubicaciones; un false se confirma con la marca de la fila.
+    public boolean tieneUbicaciones(long productoId) {
+        return porProducto.containsKey(productoId);
+    }
+
+    public List<Almacen> almacenes() {
+        return almacenRepository.findAll();
+    }
+
+    public boolean existeAlmacen(String codigo) {
+        return almacenes.containsKey(codigo);
+    }
+
+    public Almacen guardarAlmacen(Almacen almacen) {
+        Almacen guardado = almacenRepository.save(almacen);
+        almacenes.put(guardado.getCodigo(), guardado);
+        return guardado;
+    }
+
+    public List<StockUbicacion> ubicaciones(Long productoId) {
+        return repository.findByProductoIdOrderByAlmacen(productoId);
+    }
+
+    // --- Se llaman dentro de la transacción de InventarioService ---
+
+    // Fija la cantidad del producto en un almacén (creando la fila si hace falta) y devuelve el delta
+    public int fijar(Long productoId, String almacen, int cantidad) {
+        List<StockUbicacion> filas = repository.bloquearPorProducto(productoId);
+        StockUbicacion fila = filas.stream().filter(f -> f.getAlmacen().equals(almacen)).findFirst().orElse(null);
+        int anterior = 0;
+        if (fila == null) {
+            fila = new StockUbicacion();
+            fila.setProductoId(productoId);
+            fila.setAlmacen(almacen);
+        } else {
+            anterior = fila.getCantidad();
+        }
+        fila.setCantidad(cantidad);
+        repository.save(fila);
+        refrescarTrasCommit(productoId);
+        return cantidad - anterior;
+    }
+
+    // Suma de las ubicaciones del producto, con sus filas bloqueadas
+    public int total(Long productoId) {
+        long total = 0;
+        for (StockUbicacion fila : repository.bloquearPorProducto(productoId)) {
+            total += fila.getCantidad();
+        }
+        return (int) total;
+    }
+
+    // Ajuste en un almacén concreto con guarda de no negativo
+    public boolean ajustar(Long productoId, String almacen, int delta) {
+        if (repository.ajustar(productoId, almacen, delta) == 0) {
+            return false;
+        }
+        refrescarTrasCommit(productoId);
+        return true;
+    }
+
+    // Ajuste a nivel de producto: una reposición va al almacén con más stock; un descuento se toma
+    // de los almacenes con más stock primero. false si entre todos no alcanza.
+    public boolean repartir(Long productoId, int delta) {
+        List<StockUbicacion> filas = new ArrayList<>(repository.bloquearPorProducto(productoId));
+        if (filas.isEmpty()) {
+            return false;
+        }
+        filas.sort(Comparator.comparing(StockUbicacion::getCantidad).reversed());
+        if (delta >= 0) {
+            filas.get(0).setCantidad(filas.get(0).getCantidad() + delta);
+        } else {
+            long total = 0;
+            for (StockUbicacion fila : filas) {
+                total += fila.getCantidad();
+            }
+            if (total + delta < 0) {
+                return false;
+            }
+            int pendiente = -delta;
+            for (StockUbicacion fila : filas) {
+                int tomado = Math.min(pendiente, fila.getCantidad());
+                fila.setCantidad(fila.getCantidad() - tomado);
+                pendiente -= tomado;
+                if (pendiente == 0) {
+                    break;
+                }
+            }
+        }
+        refrescarTrasCommit(productoId);
+        return true;
+    }
+
+    // Recorre las ubicaciones del producto en memoria (un producto está en pocos almacenes)
+    public UbicacionCercana masCercana(long productoId, double latitud, double longitud, int cantidad) {
+        Existencia[] existencias = porProducto.get(productoId);
+        if (existencias == null) {
+            return null;
+        }
+        UbicacionCercana mejor = null;
+        for (Existencia existencia : existencias) {
+            Almacen almacen = almacenes.get(existencia.almacen());
+            if (almacen == null || existencia.cantidad() < cantidad) {
+                continue;
+            }
+            double distancia = distanciaKm(latitud, longitud, almacen.getLatitud(), almacen.getLongitud());
+            if (mejor == null || distancia < mejor.distanciaKm()) {
+                mejor = new UbicacionCercana(almacen.getCodigo(), almacen.getNombre(), distancia, existencia.cantidad());
+            }
+        }
+        return mejor;
+    }
+
+    public void borrar(Long productoId) {
+        repository.borrarPorProducto(productoId);
+        refrescarTrasCommit(productoId);
+    }
+
+    private void refrescarTrasCommit(Long productoId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refrescar(productoId);
+                }
+            });
+        } else {
+            refrescar(productoId);
+        }
+    }
+
+    private void refrescar(Long productoId) {
+        List<StockUbicacion> filas = repository.findByProductoIdOrderByAlmacen(productoId);
+        if (filas.isEmpty()) {
+            porProducto.remove(productoId);
+            return;
+        }
+        Existencia[] existencias = new Existencia[filas.size()];
+        for (int i = 0; i < existencias.length; i++) {
+            existencias[i] = new Existencia(filas.get(i).getAlmacen(), filas.get(i).getCantidad());
+        }
+        porProducto.put(productoId, existencias);
+    }
+
+    // Haversine
+    private static double distanciaKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.sqrt(a));
+    }
+
+    private record Existencia(String almacen, int cantidad) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.perfulandia.inventario.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Registro de escritura anticipada (WAL) del stock en memoria. Cada registro guarda la cantidad
+// resultante de un producto (no el delta), así que volver a aplicar un segmento ya volcado es inocuo.
+// También guarda los movimientos del libro de stock hasta que el volcado los inserta en MySQL.
+// Los segmentos se llaman stock-<n>.wal y se rotan en cada volcado; el anterior se borra cuando
+// sus valores ya están en MySQL. No es thread-safe: quien lo usa serializa las llamadas.
+public class DiarioStock implements Closeable {
+    // productoId (8 bytes) + cantidad (4 bytes); una cantidad negativa marca un producto eliminado.
+    // Un movimiento ocupa dos registros: [~productoId][delta] [creado | marca de fijación][cantidad],
+    // el primer long negativo lo distingue de un registro de cantidad
+    private static final int TAMANO_REGISTRO = 12;
+    private static final long MARCA_FIJACION = 1L << 62;
+    private static final int SIN_CANTIDAD = Integer.MIN_VALUE;
+    private static final String PREFIJO = "stock-";
+    private static final String SUFIJO = ".wal";
+
+    private final Path directorio;
+    private final ByteBuffer buffer = ByteBuffer.allocate(2 * TAMANO_REGISTRO);
+    private FileChannel canal;
+    private Path segmento;
+    private long numeroSegmento;
+
+    public DiarioStock(Path directorio) {
+        this.directorio = directorio;
+        try {
+            Files.createDirectories(directorio);
+            List<Path> existentes = segmentos();
+            numeroSegmento = existentes.isEmpty() ? 0 : numero(existentes.get(existentes.size() - 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Ajuste o fijación del libro de movimientos; cantidad es null si no se conoce la resultante
+    public record Movimiento(long productoId, boolean fijacion, int delta, Integer cantidad, long creado) {
+    }
+
+    public void recuperar(LongIntMap.Consumidor consumidor) {
+        recuperar(consumidor, Long.MAX_VALUE, movimiento -> { });
+    }
+
+    // Recorre todos los segmentos en orden y entrega cada registro completo; ignora un registro
+    // final a medio escribir (caída durante la escritura). Los movimientos de los segmentos con
+    // número <= volcadoHasta ya están en MySQL y no se entregan
+    public void recuperar(LongIntMap.Consumidor consumidor, long volcadoHasta, Consumer<Movimiento> movimientos) {
+        try {
+            for (Path path : segmentos()) {
+                boolean volcado = numero(path) <= volcadoHasta;
+                ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(path));
+                while (datos.remaining() >= TAMANO_REGISTRO) {
+                    long clave = datos.getLong();
+                    int valor = datos.getInt();
+                    if (clave >= 0) {
+                        consumidor.aceptar(clave, valor);
+                        continue;
+                    }
+                    if (datos.remaining() < TAMANO_REGISTRO) {
+                        break;
+                    }
+                    long creado = datos.getLong();
+                    int cantidad = datos.getInt();
+                    if (!volcado) {
+                        movimientos.accept(new Movimiento(~clave, (creado & MARCA_FIJACION) != 0, valor,
+                                cantidad == SIN_CANTIDAD ? null : cantidad, creado & ~MARCA_FIJACION));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Abre un segmento nuevo para escribir y devuelve los que quedan pendientes de volcar
+    public List<Path> abrir() {
+        try {
+            List<Path> anteriores = segmentos();
+            abrirSegmento();
+            return anteriores;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Una llamada write por registro: sobrevive a la caída del proceso; sincronizar() cubre la del sistema
+    public void escribir(long productoId, int cantidad) {
+        buffer.clear();
+        buffer.putLong(productoId).putInt(cantidad).flip();
+        vaciarBuffer();
+    }
+
+    public void escribir(Movimiento movimiento) {
+        buffer.clear();
+        buffer.putLong(~movimiento.productoId()).putInt(movimiento.delta())
+                .putLong(movimiento.creado() | (movimiento.fijacion() ? MARCA_FIJACION : 0))
+                .putInt(movimiento.cantidad() != null ? movimiento.cantidad() : SIN_CANTIDAD)
+                .flip();
+        vaciarBuffer();
+    }
+
+    public void sincronizar() {
+        try {
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Cierra el segmento actual y abre el siguiente; devuelve el cerrado
+    public Path rotar() {
+        try {
+            canal.force(false);
+            canal.close();
+            Path cerrado = segmento;
+            abrirSegmento();
+            return cerrado;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void borrar(List<Path> volcados) {
+        try {
+            for (Path path : volcados) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal != null && canal.isOpen()) {
+            canal.force(false);
+            canal.close();
+        }
+    }
+
+    public static long numero(Path path) {
+        String nombre = path.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+    }
+
+    private void vaciarBuffer() {
+        try {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void abrirSegmento() throws IOException {
+        numeroSegmento++;
+        segmento = directorio.resolve(PREFIJO + numeroSegmento + SUFIJO);
+        canal = FileChannel.open(segmento, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segmentos() throws IOException {
+        List<Path> resultado = new ArrayList<>();
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivos.filter(p -> p.getFileName().toString().startsWith(PREFIJO)
+                            && p.getFileName().toString().endsWith(SUFIJO))
+                    .forEach(resultado::add);
+        }
+        resultado.sort((a, b) -> Long.compare(numero(a), numero(b)));
+        return resultado;
+    }
+}
@@ -0,0 +1,137 @@
+package com.perfulandia.inventario.util;
+
+import java.util.Arrays;
+
+// Mapa long -> int con direccionamiento abierto (sondeo lineal) y sin boxing.
+// No es thread-safe: cada hilo usa su propia instancia o se sincroniza por fuera.
+public class LongIntMap {
+    private static final float CARGA_MAXIMA = 0.6f;
+
+    private long[] claves;
+    private int[] valores;
+    private boolean[] ocupados;
+    private int tamano;
+    private int umbral;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int capacidadEsperada) {
+        int capacidad = Integer.highestOneBit(Math.max(4, (int) (capacidadEsperada / CARGA_MAXIMA)) - 1) << 1;
+        inicializar(capacidad);
+    }
+
+    private void inicializar(int capacidad) {
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        ocupados = new boolean[capacidad];
+        umbral = (int) (capacidad * CARGA_MAXIMA);
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    public boolean isEmpty() {
+        return tamano == 0;
+    }
+
+    public boolean containsKey(long clave) {
+        return ocupados[posicion(clave)];
+    }
+
+    public int get(long clave, int porDefecto) {
+        int i = posicion(clave);
+        return ocupados[i] ? valores[i] : porDefecto;
+    }
+
+    public void put(long clave, int valor) {
+        int i = posicion(clave);
+        if (!ocupados[i]) {
+            insertar(i, clave, valor);
+        } else {
+            valores[i] = valor;
+        }
+    }
+
+    // Suma delta al valor de la clave (0 si no existía) y devuelve el resultado
+    public int addTo(long clave, int delta) {
+        int i = posicion(clave);
+        if (!ocupados[i]) {
+            insertar(i, clave, delta);
+            return delta;
+        }
+        valores[i] += delta;
+        return valores[i];
+    }
+
+    // Claves en orden ascendente
+    public long[] sortedKeys() {
+        long[] resultado = new long[tamano];
+        int j = 0;
+        for (int i = 0; i < claves.length; i++) {
+            if (ocupados[i]) {
+                resultado[j++] = claves[i];
+            }
+        }
+        Arrays.sort(resultado);
+        return resultado;
+    }
+
+    public void forEach(Consumidor consumidor) {
+        for (int i = 0; i < claves.length; i++) {
+            if (ocupados[i]) {
+                consumidor.aceptar(claves[i], valores[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(ocupados, false);
+        tamano = 0;
+    }
+
+    private void insertar(int i, long clave, int valor) {
+        claves[i] = clave;
+        valores[i] = valor;
+        ocupados[i] = true;
+        if (++tamano > umbral) {
+            redimensionar();
+        }
+    }
+
+    private int posicion(long clave) {
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (ocupados[i] && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void redimensionar() {
+        long[] clavesViejas = claves;
+        int[] valoresViejos = valores;
+        boolean[] ocupadosViejos = ocupados;
+        inicializar(clavesViejas.length << 1);
+        for (int i = 0; i < clavesViejas.length; i++) {
+            if (ocupadosViejos[i]) {
+                int j = posicion(clavesViejas[i]);
+                claves[j] = clavesViejas[i];
+                valores[j] = valoresViejos[i];
+                ocupados[j] = true;
+            }
+        }
+    }
+
+    private static int mezclar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface Consumidor {
+        void aceptar(long clave, int valor);
+    }
+}
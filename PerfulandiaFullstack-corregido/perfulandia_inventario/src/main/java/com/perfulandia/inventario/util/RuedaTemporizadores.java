@@ -0,0 +1,161 @@
+package com.perfulandia.inventario.util;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// Rueda de temporizadores con hash (estilo HashedWheelTimer): programar y cancelar son O(1) y en cada
+// tick solo se recorre una ranura. Un vencimiento más lejano que una vuelta completa lleva la cuenta
+// de vueltas pendientes. La precisión es de un tick. La rueda no tiene hilo propio: quien la usa llama
+// a avanzar() cada tick (una tarea periódica) y los vencidos se entregan al ejecutor, no a ese hilo.
+public class RuedaTemporizadores implements Closeable {
+
+    private final long tickNanos;
+    private final Ranura[] ranuras;
+    private final int mascara;
+    private final LongConsumer alVencer;
+    private final Executor ejecutor;
+    // Los hilos que programan no tocan las ranuras: avanzar() las reparte en cada tick
+    private final Queue<Temporizador> nuevos = new ConcurrentLinkedQueue<>();
+    private final LongSupplier reloj;
+    private final long inicio;
+    private volatile boolean activa = true;
+    private long tick;
+
+    public RuedaTemporizadores(long tickMs, int numeroRanuras, LongConsumer alVencer, Executor ejecutor) {
+        this(tickMs, numeroRanuras, alVencer, ejecutor, System::nanoTime);
+    }
+
+    // reloj en nanosegundos; los tests lo sustituyen para avanzar el tiempo a mano
+    RuedaTemporizadores(long tickMs, int numeroRanuras, LongConsumer alVencer, Executor ejecutor, LongSupplier reloj) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        int n = Integer.highestOneBit(Math.max(2, numeroRanuras) - 1) << 1;
+        this.ranuras = new Ranura[n];
+        for (int i = 0; i < n; i++) {
+            ranuras[i] = new Ranura();
+        }
+        this.mascara = n - 1;
+        this.alVencer = alVencer;
+        this.ejecutor = ejecutor;
+        this.reloj = reloj;
+        this.inicio = reloj.getAsLong();
+    }
+
+    // Programa la entrega de id tras retrasoMs; el temporizador devuelto permite cancelarla
+    public Temporizador programar(long id, long retrasoMs) {
+        long vence = reloj.getAsLong() - inicio + TimeUnit.MILLISECONDS.toNanos(Math.max(0, retrasoMs));
+        Temporizador temporizador = new Temporizador(id, vence);
+        nuevos.add(temporizador);
+        return temporizador;
+    }
+
+    // Procesa todos los ticks ya transcurridos (se pone al día si una llamada llega tarde). Las
+    // llamadas no deben solaparse: las hace una sola tarea periódica
+    public void avanzar() {
+        long transcurrido = reloj.getAsLong() - inicio;
+        while (activa && (tick + 1) * tickNanos <= transcurrido) {
+            repartirNuevos();
+            vencer(ranuras[(int) (tick & mascara)]);
+            tick++;
+        }
+    }
+
+    // Desde aquí avanzar() ya no entrega nada
+    @Override
+    public void close() {
+        activa = false;
+    }
+
+    private void repartirNuevos() {
+        Temporizador temporizador;
+        while ((temporizador = nuevos.poll()) != null) {
+            if (temporizador.cancelado) {
+                continue;
+            }
+            // Si ya venció se coloca en la ranura actual para entregarlo en este mismo tick
+            long objetivo = Math.max(temporizador.vence / tickNanos, tick);
+            temporizador.vueltas = (objetivo - tick) / ranuras.length;
+            ranuras[(int) (objetivo & mascara)].agregar(temporizador);
+        }
+    }
+
+    private void vencer(Ranura ranura) {
+        Temporizador actual = ranura.cabeza;
+        while (actual != null) {
+            Temporizador siguiente = actual.siguiente;
+            if (actual.cancelado) {
+                ranura.quitar(actual);
+            } else if (actual.vueltas <= 0) {
+                ranura.quitar(actual);
+                long id = actual.id;
+                try {
+                    ejecutor.execute(() -> alVencer.accept(id));
+                } catch (RuntimeException e) {
+                    System.out.println("No se pudo entregar el temporizador " + id + ": " + e.getMessage());
+                }
+            } else {
+                actual.vueltas--;
+            }
+            actual = siguiente;
+        }
+    }
+
+    public static final class Temporizador {
+        private final long id;
+        private final long vence;
+        private long vueltas;
+        private volatile boolean cancelado;
+        private Temporizador anterior;
+        private Temporizador siguiente;
+
+        private Temporizador(long id, long vence) {
+            this.id = id;
+            this.vence = vence;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        // Marca el temporizador; avanzar() lo descarta al pasar por su ranura
+        public void cancelar() {
+            cancelado = true;
+        }
+    }
+
+    // Lista doblemente enlazada; solo la toca avanzar()
+    private static final class Ranura {
+        private Temporizador cabeza;
+        private Temporizador cola;
+
+        private void agregar(Temporizador temporizador) {
+            temporizador.anterior = cola;
+            temporizador.siguiente = null;
+            if (cola == null) {
+                cabeza = temporizador;
+            } else {
+                cola.siguiente = temporizador;
+            }
+            cola = temporizador;
+        }
+
+        private void quitar(Temporizador temporizador) {
+            if (temporizador.anterior == null) {
+                cabeza = temporizador.siguiente;
+            } else {
+                temporizador.anterior.siguiente = temporizador.siguiente;
+            }
+            if (temporizador.siguiente == null) {
+                cola = temporizador.anterior;
+            } else {
+                temporizador.siguiente.anterior = temporizador.anterior;
+            }
+            temporizador.anterior = null;
+            temporizador.siguiente = null;
+        }
+    }
+}
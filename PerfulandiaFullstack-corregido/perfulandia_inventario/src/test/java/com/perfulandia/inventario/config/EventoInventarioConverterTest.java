@@ -0,0 +1,116 @@
+package com.perfulandia.inventario.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.inventario.model.EventoInventario;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventoInventarioConverterTest {
+    // Formato de cable fijado byte a byte. El conversor está copiado en perfulandia_pedido (productor)
+    // y perfulandia_inventario (consumidor) y ambos tests llevan estos mismos fixtures: si uno cambia
+    // sin el otro, falla su test
+    private static final EventoInventario EVENTO_FIJADO = new EventoInventario(300, List.of(
+            new EventoInventario.Linea(1, 2),
+            new EventoInventario.Linea(150, -3),
+            new EventoInventario.Linea(70000, 0)));
+    private static final byte[] BINARIO_FIJADO = {
+            (byte) 0xAC, 0x02,             // pedidoId 300
+            0x03,                          // 3 líneas
+            0x01, 0x04,                    // producto 1, cantidad 2 (zigzag 4)
+            (byte) 0x96, 0x01, 0x05,       // producto 150, cantidad -3 (zigzag 5)
+            (byte) 0xF0, (byte) 0xA2, 0x04, 0x00}; // producto 70000, cantidad 0
+    private static final String JSON_FIJADO = "{\"pedidoId\":300,\"lineas\":[{\"productoId\":1,\"cantidad\":2},"
+            + "{\"productoId\":150,\"cantidad\":-3},{\"productoId\":70000,\"cantidad\":0}]}";
+
+    private final EventoInventarioConverter converter = new EventoInventarioConverter(new ObjectMapper(), true);
+
+    @Test
+    void binarioFijado() {
+        Message mensaje = converter.toMessage(EVENTO_FIJADO, new MessageProperties());
+
+        assertArrayEquals(BINARIO_FIJADO, mensaje.getBody());
+        assertEquals(EventoInventarioConverter.CONTENT_TYPE_BINARIO, mensaje.getMessageProperties().getContentType());
+        assertEquals(Integer.valueOf(1), mensaje.getMessageProperties().getHeader(EventoInventarioConverter.HEADER_VERSION));
+        assertEquals(EVENTO_FIJADO, converter.fromMessage(mensaje));
+    }
+
+    @Test
+    void jsonFijado() {
+        EventoInventarioConverter json = new EventoInventarioConverter(new ObjectMapper(), false);
+        Message mensaje = json.toMessage(EVENTO_FIJADO, new MessageProperties());
+
+        assertEquals(JSON_FIJADO, new String(mensaje.getBody(), StandardCharsets.UTF_8));
+        assertEquals(EVENTO_FIJADO, json.fromMessage(mensaje));
+    }
+
+    @Test
+    void textoAntiguoFijado() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        Message mensaje = new Message("150:4".getBytes(StandardCharsets.UTF_8), properties);
+
+        assertEquals(new EventoInventario(0, List.of(new EventoInventario.Linea(150, 4))), converter.fromMessage(mensaje));
+    }
+
+    @Test
+    void idaYVueltaBinario() {
+        EventoInventario evento = new EventoInventario(Long.MAX_VALUE, List.of(
+                new EventoInventario.Linea(1, -3),
+                new EventoInventario.Linea(300, Integer.MAX_VALUE),
+                new EventoInventario.Linea(Long.MAX_VALUE, Integer.MIN_VALUE),
+                new EventoInventario.Linea(42, 0)));
+
+        Message mensaje = converter.toMessage(evento, new MessageProperties());
+
+        assertEquals(EventoInventarioConverter.CONTENT_TYPE_BINARIO, mensaje.getMessageProperties().getContentType());
+        assertEquals(evento, converter.fromMessage(mensaje));
+    }
+
+    @Test
+    void idaYVueltaSinLineas() {
+        EventoInventario evento = new EventoInventario(7, List.of());
+        assertEquals(evento, EventoInventarioConverter.decodificar(EventoInventarioConverter.codificar(evento)));
+    }
+
+    @Test
+    void idaYVueltaJson() {
+        EventoInventarioConverter json = new EventoInventarioConverter(new ObjectMapper(), false);
+        EventoInventario evento = new EventoInventario(5, List.of(new EventoInventario.Linea(9, -2)));
+        assertEquals(evento, json.fromMessage(json.toMessage(evento, new MessageProperties())));
+    }
+
+    @Test
+    void cuerpoTruncadoSeRechaza() {
+        byte[] completo = EventoInventarioConverter.codificar(new EventoInventario(123456, List.of(
+                new EventoInventario.Linea(1000, -50), new EventoInventario.Linea(2000, 70))));
+        for (int largo = 0; largo < completo.length; largo++) {
+            byte[] truncado = Arrays.copyOf(completo, largo);
+            assertThrows(MessageConversionException.class, () -> EventoInventarioConverter.decodificar(truncado),
+                    "largo " + largo);
+        }
+    }
+
+    @Test
+    void numeroDeLineasMayorQueElCuerpoSeRechaza() {
+        // pedidoId = 1 y n = 2^31 - 1 sin ninguna línea detrás: no debe reservar memoria para n
+        byte[] cuerpo = {0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(MessageConversionException.class, () -> EventoInventarioConverter.decodificar(cuerpo));
+    }
+
+    @Test
+    void versionNoSoportadaSeRechaza() {
+        Message mensaje = converter.toMessage(new EventoInventario(1, List.of()), new MessageProperties());
+        mensaje.getMessageProperties().setHeader(EventoInventarioConverter.HEADER_VERSION, EventoInventario.VERSION + 1);
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(mensaje));
+    }
+}
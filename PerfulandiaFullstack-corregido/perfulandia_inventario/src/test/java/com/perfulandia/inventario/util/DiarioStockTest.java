@@ -0,0 +1,123 @@
+package com.perfulandia.inventario.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiarioStockTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void recuperaLosRegistrosEnOrden() throws IOException {
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            diario.abrir();
+            diario.escribir(1, 10);
+            diario.escribir(2, 20);
+            diario.escribir(1, 7);
+            diario.escribir(3, -1);
+        }
+
+        assertEquals(List.of("1=10", "2=20", "1=7", "3=-1"), recuperar(new DiarioStock(directorio)));
+    }
+
+    @Test
+    void ignoraUnRegistroFinalAMedias() throws IOException {
+        Path segmento;
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            diario.abrir();
+            diario.escribir(1, 10);
+            segmento = diario.rotar();
+            diario.escribir(2, 20);
+        }
+        // Caída a mitad de escribir el segundo registro del primer segmento
+        Files.write(segmento, new byte[]{0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("1=10", "2=20"), recuperar(new DiarioStock(directorio)));
+    }
+
+    @Test
+    void rotarYBorrarLosSegmentosVolcados() throws IOException {
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            diario.abrir();
+            diario.escribir(1, 10);
+            Path primero = diario.rotar();
+            diario.escribir(2, 20);
+            Path segundo = diario.rotar();
+            diario.escribir(3, 30);
+
+            assertTrue(DiarioStock.numero(primero) < DiarioStock.numero(segundo));
+            diario.borrar(List.of(primero));
+            assertTrue(Files.notExists(primero));
+        }
+
+        assertEquals(List.of("2=20", "3=30"), recuperar(new DiarioStock(directorio)));
+    }
+
+    // Tras reiniciar, abrir() devuelve los segmentos anteriores y sigue numerando detrás de ellos
+    @Test
+    void reabrirContinuaLaNumeracion() throws IOException {
+        Path anterior;
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            diario.abrir();
+            diario.escribir(1, 10);
+            anterior = diario.rotar();
+        }
+
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            List<Path> pendientes = diario.abrir();
+            assertEquals(2, pendientes.size());
+            assertEquals(anterior, pendientes.get(0));
+            diario.escribir(2, 20);
+            Path nuevo = diario.rotar();
+            assertTrue(DiarioStock.numero(nuevo) > DiarioStock.numero(pendientes.get(1)));
+        }
+
+        assertEquals(List.of("1=10", "2=20"), recuperar(new DiarioStock(directorio)));
+    }
+
+    @Test
+    void movimientosIntercaladosYYaVolcados() throws IOException {
+        long volcado;
+        try (DiarioStock diario = new DiarioStock(directorio)) {
+            diario.abrir();
+            diario.escribir(1, 10);
+            diario.escribir(new DiarioStock.Movimiento(1, false, -3, null, 1000));
+            volcado = DiarioStock.numero(diario.rotar());
+            diario.escribir(new DiarioStock.Movimiento(2, true, 0, 50, 2000));
+            diario.escribir(2, 50);
+            diario.escribir(new DiarioStock.Movimiento(2, false, -5, 45, 3000));
+        }
+
+        List<String> cantidades = new ArrayList<>();
+        List<DiarioStock.Movimiento> movimientos = new ArrayList<>();
+        new DiarioStock(directorio).recuperar((productoId, cantidad) -> cantidades.add(productoId + "=" + cantidad),
+                volcado, movimientos::add);
+
+        // Las cantidades se reaplican siempre; los movimientos del segmento ya volcado no
+        assertEquals(List.of("1=10", "2=50"), cantidades);
+        assertEquals(List.of(new DiarioStock.Movimiento(2, true, 0, 50, 2000),
+                new DiarioStock.Movimiento(2, false, -5, 45, 3000)), movimientos);
+
+        movimientos.clear();
+        new DiarioStock(directorio).recuperar((productoId, cantidad) -> { }, 0, movimientos::add);
+        assertEquals(new DiarioStock.Movimiento(1, false, -3, null, 1000), movimientos.get(0));
+        assertEquals(3, movimientos.size());
+    }
+
+    private static List<String> recuperar(DiarioStock diario) {
+        List<String> registros = new ArrayList<>();
+        diario.recuperar((productoId, cantidad) -> registros.add(productoId + "=" + cantidad));
+        return registros;
+    }
+}
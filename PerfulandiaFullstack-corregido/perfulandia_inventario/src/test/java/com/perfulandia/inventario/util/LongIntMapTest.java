@@ -0,0 +1,94 @@
+package com.perfulandia.inventario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongIntMapTest {
+
+    @Test
+    void putGetYAddTo() {
+        LongIntMap mapa = new LongIntMap();
+        assertTrue(mapa.isEmpty());
+        assertEquals(-1, mapa.get(5, -1));
+
+        mapa.put(5, 10);
+        mapa.put(5, 11);
+        assertEquals(13, mapa.addTo(5, 2));
+        assertEquals(-4, mapa.addTo(6, -4));
+
+        assertEquals(2, mapa.size());
+        assertEquals(13, mapa.get(5, -1));
+        assertEquals(-4, mapa.get(6, -1));
+        assertFalse(mapa.containsKey(7));
+    }
+
+    @Test
+    void clavesExtremas() {
+        LongIntMap mapa = new LongIntMap();
+        long[] claves = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, -(1L << 32)};
+        for (int i = 0; i < claves.length; i++) {
+            mapa.put(claves[i], i);
+        }
+        for (int i = 0; i < claves.length; i++) {
+            assertEquals(i, mapa.get(claves[i], -1));
+        }
+        assertArrayEquals(new long[]{Long.MIN_VALUE, -(1L << 32), -1, 0, 1L << 32, Long.MAX_VALUE}, mapa.sortedKeys());
+    }
+
+    // Tabla mínima (4 posiciones): casi todas las inserciones sondean y el mapa se redimensiona
+    // muchas veces; tras cada paso todas las claves anteriores siguen localizables
+    @Test
+    void sondeoYRedimensionado() {
+        LongIntMap mapa = new LongIntMap(1);
+        Map<Long, Integer> esperado = new HashMap<>();
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            // Múltiplos de potencias de dos: se concentran en pocas posiciones sin una buena mezcla
+            long clave = (long) aleatorio.nextInt(2000) << (aleatorio.nextInt(4) * 16);
+            int delta = aleatorio.nextInt(100) - 50;
+            esperado.merge(clave, delta, Integer::sum);
+            mapa.addTo(clave, delta);
+            if (i % 500 == 0) {
+                for (Map.Entry<Long, Integer> entrada : esperado.entrySet()) {
+                    assertEquals(entrada.getValue(), mapa.get(entrada.getKey(), Integer.MIN_VALUE));
+                }
+            }
+        }
+        assertEquals(esperado.size(), mapa.size());
+        int[] recorridos = {0};
+        mapa.forEach((clave, valor) -> {
+            assertEquals(esperado.get(clave), valor);
+            recorridos[0]++;
+        });
+        assertEquals(esperado.size(), recorridos[0]);
+
+        long[] ordenadas = mapa.sortedKeys();
+        for (int i = 1; i < ordenadas.length; i++) {
+            assertTrue(ordenadas[i - 1] < ordenadas[i]);
+        }
+    }
+
+    @Test
+    void clearDejaElMapaReutilizable() {
+        LongIntMap mapa = new LongIntMap(2);
+        for (long clave = 0; clave < 100; clave++) {
+            mapa.put(clave, (int) clave);
+        }
+        mapa.clear();
+        assertEquals(0, mapa.size());
+        assertFalse(mapa.containsKey(50));
+        assertEquals(0, mapa.sortedKeys().length);
+
+        mapa.put(50, 1);
+        assertEquals(1, mapa.get(50, -1));
+        assertEquals(1, mapa.size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.perfulandia.inventario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// El reloj es manual: cada test mueve el tiempo y llama a avanzar(), sin hilos ni esperas
+class RuedaTemporizadoresTest {
+
+    private final AtomicLong reloj = new AtomicLong();
+    private final List<Long> vencidos = new ArrayList<>();
+
+    private RuedaTemporizadores rueda(long tickMs, int ranuras) {
+        return new RuedaTemporizadores(tickMs, ranuras, vencidos::add, Runnable::run, reloj::get);
+    }
+
+    private void avanzarHasta(RuedaTemporizadores rueda, long ms) {
+        reloj.set(TimeUnit.MILLISECONDS.toNanos(ms));
+        rueda.avanzar();
+    }
+
+    @Test
+    void entregaTrasElRetraso() {
+        try (RuedaTemporizadores rueda = rueda(10, 8)) {
+            rueda.programar(7, 50);
+            avanzarHasta(rueda, 49);
+            assertTrue(vencidos.isEmpty());
+            // Como mucho un tick tarde
+            avanzarHasta(rueda, 60);
+            assertEquals(List.of(7L), vencidos);
+        }
+    }
+
+    // 4 ranuras de 10 ms: una vuelta son 40 ms, así que 150 ms necesita varias vueltas
+    @Test
+    void retrasoMayorQueUnaVuelta() {
+        try (RuedaTemporizadores rueda = rueda(10, 4)) {
+            rueda.programar(1, 150);
+            for (long ms = 10; ms < 150; ms += 10) {
+                avanzarHasta(rueda, ms);
+            }
+            assertTrue(vencidos.isEmpty());
+            avanzarHasta(rueda, 160);
+            assertEquals(List.of(1L), vencidos);
+        }
+    }
+
+    // Una llamada que llega tarde procesa todos los ticks pendientes de una vez
+    @Test
+    void avanzarSePoneAlDia() {
+        try (RuedaTemporizadores rueda = rueda(10, 4)) {
+            rueda.programar(1, 20);
+            rueda.programar(2, 150);
+            avanzarHasta(rueda, 500);
+            assertEquals(List.of(1L, 2L), vencidos);
+        }
+    }
+
+    @Test
+    void cancelarEvitaLaEntrega() {
+        try (RuedaTemporizadores rueda = rueda(10, 8)) {
+            RuedaTemporizadores.Temporizador cancelado = rueda.programar(1, 30);
+            rueda.programar(2, 30);
+            // También antes de que avanzar() lo reparta en su ranura
+            rueda.programar(4, 0).cancelar();
+            rueda.programar(3, 120);
+            avanzarHasta(rueda, 10);
+            cancelado.cancelar();
+            avanzarHasta(rueda, 200);
+        }
+        assertEquals(List.of(2L, 3L), vencidos);
+    }
+
+    // Los que ya vencieron al repartirse se entregan en el tick actual, en orden de programación
+    @Test
+    void retrasoCeroSeEntregaEnElSiguienteTick() {
+        try (RuedaTemporizadores rueda = rueda(10, 8)) {
+            rueda.programar(1, 0);
+            rueda.programar(2, -5);
+            rueda.programar(3, 0);
+            avanzarHasta(rueda, 5);
+            assertTrue(vencidos.isEmpty());
+            avanzarHasta(rueda, 10);
+        }
+        assertEquals(List.of(1L, 2L, 3L), vencidos);
+    }
+
+    @Test
+    void cerradaNoEntrega() {
+        RuedaTemporizadores rueda = rueda(10, 8);
+        rueda.programar(1, 10);
+        rueda.close();
+        avanzarHasta(rueda, 100);
+        assertTrue(vencidos.isEmpty());
+    }
+}
@@ -0,0 +1,50 @@
+package com.perfulandia.pago.config;
+
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+    public static final String PAGO_QUEUE = "pedido-pago";
+    // Mensajes de pago ilegibles o incompletos, para revisarlos a mano
+    public static final String PAGO_DLQ = "pedido-pago.dlq";
+
+    // Los argumentos deben coincidir con la declaración de perfulandia_pedido
+    @Bean
+    public Queue pagoQueue() {
+        return QueueBuilder.durable(PAGO_QUEUE)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(PAGO_DLQ)
+                .build();
+    }
+
+    @Bean
+    public Queue pagoDlq() {
+        return QueueBuilder.durable(PAGO_DLQ).build();
+    }
+
+    // Entrega los mensajes en lotes: hasta batch-size o lo que llegue en receive-timeout-ms.
+    // Ack manual: PagoListener confirma o rechaza cada mensaje del lote por separado.
+    @Bean
+    public SimpleRabbitListenerContainerFactory pagoBatchFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${pago.consumer.batch-size:200}") int batchSize,
+            @Value("${pago.consumer.receive-timeout-ms:50}") long receiveTimeoutMs,
+            @Value("${pago.consumer.prefetch:500}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
@@ -3,6 +3,7 @@ package com.perfulandia.pago.controller;
 import com.perfulandia.pago.model.Pago;
 import com.perfulandia.pago.service.PagoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -28,11 +29,17 @@ public class PagoController {
         return pago != null ? ResponseEntity.ok(pago) : ResponseEntity.notFound().build();
     }
 
+    // 409 si ya hay un pago para ese pedido (uk_pagos_pedido)
     @PostMapping
-    public Pago create(@RequestBody Pago pago) {
-        return service.save(pago);
+    public ResponseEntity<Pago> create(@RequestBody Pago pago) {
+        try {
+            return ResponseEntity.ok(service.save(pago));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(409).build();
+        }
     }
 
+    // 409 si el pedidoId nuevo ya tiene otro pago
     @PutMapping("/{id}")
     public ResponseEntity<Pago> update(@PathVariable Long id, @RequestBody Pago data) {
         Pago existing = service.findById(id);
@@ -43,7 +50,11 @@ public class PagoController {
         existing.setMonto(data.getMonto());
         existing.setMetodo(data.getMetodo());
         existing.setEstado(data.getEstado());
-        return ResponseEntity.ok(service.save(existing));
+        try {
+            return ResponseEntity.ok(service.save(existing));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(409).build();
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -69,6 +80,10 @@ public class PagoController {
                 ReflectionUtils.setField(field, pago, value);
             }
         });
-        return ResponseEntity.ok(service.save(pago));
+        try {
+            return ResponseEntity.ok(service.save(pago));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(409).build();
+        }
     }
 }
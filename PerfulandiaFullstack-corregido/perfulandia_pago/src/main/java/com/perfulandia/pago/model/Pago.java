@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "pagos")
+// Un pago por pedido: el outbox de pedido entrega al menos una vez y los repetidos se ignoran
+@Table(name = "pagos", uniqueConstraints = @UniqueConstraint(name = "uk_pagos_pedido", columnNames = "pedido_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,120 @@
+package com.perfulandia.pago.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.pago.config.RabbitMQConfig;
+import com.perfulandia.pago.model.Pago;
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class PagoListener {
+
+    @Autowired
+    private PagoService pagoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Los pagos publicados por perfulandia_pedido se insertan por lotes. Cada mensaje se lee y
+    // valida por separado: uno ilegible o incompleto se rechaza hacia pedido-pago.dlq sin frenar al
+    // resto. Si el batch falla por un error transitorio de la base de datos, los válidos vuelven a la
+    // cola; si no, se guardan uno a uno y solo los que vuelven a fallar van a la DLQ.
+    @RabbitListener(queues = RabbitMQConfig.PAGO_QUEUE, containerFactory = "pagoBatchFactory")
+    public void recibirPagos(List<Message> mensajes, Channel channel) throws IOException {
+        List<Pago> pagos = new ArrayList<>(mensajes.size());
+        List<Long> validos = new ArrayList<>(mensajes.size());
+        for (Message mensaje : mensajes) {
+            long tag = mensaje.getMessageProperties().getDeliveryTag();
+            String motivo;
+            try {
+                Pago pago = objectMapper.readValue(mensaje.getBody(), Pago.class);
+                motivo = validar(pago);
+                if (motivo == null) {
+                    pagos.add(pago);
+                    validos.add(tag);
+                    continue;
+                }
+            } catch (IOException e) {
+                motivo = "JSON no válido: " + e.getMessage();
+            }
+            System.out.println("Pago enviado a " + RabbitMQConfig.PAGO_DLQ + ": " + motivo);
+            channel.basicReject(tag, false);
+        }
+        if (pagos.isEmpty()) {
+            return;
+        }
+        try {
+            pagoService.saveBatch(pagos);
+        } catch (DataAccessException | TransactionException e) {
+            if (esTransitorio(e)) {
+                System.out.println("Error guardando " + pagos.size() + " pagos, se reintentarán: " + e.getMessage());
+                for (long tag : validos) {
+                    channel.basicNack(tag, false, true);
+                }
+                return;
+            }
+            // El batch se deshizo entero: se repite pago a pago para que uno que siempre falla (una
+            // columna demasiado larga, otra restricción) vaya a la DLQ sin bloquear a los demás
+            System.out.println("Lote de " + pagos.size() + " pagos fallido, se reintenta uno a uno: " + e.getMessage());
+            guardarUnoAUno(pagos, validos, channel);
+            return;
+        }
+        for (long tag : validos) {
+            channel.basicAck(tag, false);
+        }
+        System.out.println("Registrados " + pagos.size() + " pagos recibidos por RabbitMQ");
+    }
+
+    private void guardarUnoAUno(List<Pago> pagos, List<Long> tags, Channel channel) throws IOException {
+        int registrados = 0;
+        for (int i = 0; i < pagos.size(); i++) {
+            Pago pago = pagos.get(i);
+            long tag = tags.get(i);
+            try {
+                pagoService.saveBatch(List.of(pago));
+                channel.basicAck(tag, false);
+                registrados++;
+            } catch (DataAccessException | TransactionException e) {
+                if (esTransitorio(e)) {
+                    channel.basicNack(tag, false, true);
+                } else {
+                    System.out.println("Pago del pedido " + pago.getPedidoId() + " enviado a "
+                            + RabbitMQConfig.PAGO_DLQ + ": " + e.getMessage());
+                    channel.basicReject(tag, false);
+                }
+            }
+        }
+        System.out.println("Registrados " + registrados + " de " + pagos.size() + " pagos recibidos por RabbitMQ");
+    }
+
+    // Se reintenta lo que puede salir bien más tarde: bloqueos, timeouts y la base de datos caída o
+    // sin conexiones. El resto fallaría igual en cada reentrega
+    private static boolean esTransitorio(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+
+    private static String validar(Pago pago) {
+        if (pago == null || pago.getPedidoId() == null) {
+            return "pago sin pedidoId";
+        }
+        if (pago.getMonto() == null || pago.getMetodo() == null || pago.getEstado() == null) {
+            return "pago del pedido " + pago.getPedidoId() + " sin monto, método o estado";
+        }
+        return null;
+    }
+}
@@ -3,7 +3,9 @@ package com.perfulandia.pago.service;
 import com.perfulandia.pago.model.Pago;
 import com.perfulandia.pago.repository.PagoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,6 +14,9 @@ public class PagoService {
     @Autowired
     private PagoRepository repository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     public List<Pago> findAll() {
         return repository.findAll();
     }
@@ -24,6 +29,21 @@ public class PagoService {
         return repository.save(pago);
     }
 
+    // Inserción masiva en un solo batch JDBC (multi-row con rewriteBatchedStatements). Un pago
+    // repetido para el mismo pedido (reentrega) no cambia nada.
+    @Transactional
+    public void saveBatch(List<Pago> pagos) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO pagos (pedido_id, monto, metodo, estado) VALUES (?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE pedido_id = pedido_id",
+                pagos, pagos.size(), (ps, pago) -> {
+                    ps.setLong(1, pago.getPedidoId());
+                    ps.setDouble(2, pago.getMonto());
+                    ps.setString(3, pago.getMetodo());
+                    ps.setString(4, pago.getEstado());
+                });
+    }
+
     public void deleteById(Long id) {
         repository.deleteById(id);
     }
@@ -0,0 +1,9 @@
+-- Tabla tal como la creaba hibernate (ddl-auto=update); en una base existente no hace nada
+CREATE TABLE IF NOT EXISTS pagos (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    pedido_id BIGINT NOT NULL,
+    monto DOUBLE NOT NULL,
+    metodo VARCHAR(255) NOT NULL,
+    estado VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,54 @@
+-- Un pago por pedido. Los repetidos que dejaron las reentregas del outbox no se borran: se copian a
+-- pagos_duplicados (con el id del pago que se conserva) y solo entonces se quitan de pagos.
+-- Por pedido se conserva el PAGADO; si no hay, el que ya no está PENDIENTE; si no, el más antiguo.
+
+-- Lo que no se puede decidir solo (dos PAGADO del mismo pedido, o sin PAGADO y con dos estados
+-- finales distintos) para la migración antes de tocar nada, para resolverlo a mano. MySQL no deja
+-- lanzar SIGNAL fuera de un procedimiento: el error es preparar una consulta sobre una tabla que
+-- no existe y cuyo nombre explica el motivo.
+SET @conflictos = (SELECT COUNT(*) FROM (
+    SELECT pedido_id FROM pagos
+    GROUP BY pedido_id
+    HAVING SUM(estado = 'PAGADO') > 1
+        OR (SUM(estado = 'PAGADO') = 0 AND COUNT(DISTINCT CASE WHEN estado <> 'PENDIENTE' THEN estado END) > 1)
+) c);
+SET @parar = IF(@conflictos = 0, 'DO 0',
+    'SELECT * FROM `pagos: pedidos con varios pagos finales, resolver a mano antes de migrar`');
+PREPARE parar FROM @parar;
+EXECUTE parar;
+DEALLOCATE PREPARE parar;
+
+CREATE TABLE IF NOT EXISTS pagos_duplicados (
+    id BIGINT NOT NULL,
+    pedido_id BIGINT NOT NULL,
+    monto DOUBLE NOT NULL,
+    metodo VARCHAR(255) NOT NULL,
+    estado VARCHAR(255) NOT NULL,
+    conservado_id BIGINT NOT NULL,
+    movido TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+INSERT IGNORE INTO pagos_duplicados (id, pedido_id, monto, metodo, estado, conservado_id)
+SELECT r.id, r.pedido_id, r.monto, r.metodo, r.estado, r.conservado_id
+FROM (
+    SELECT p.id, p.pedido_id, p.monto, p.metodo, p.estado,
+           ROW_NUMBER() OVER w AS orden,
+           FIRST_VALUE(p.id) OVER w AS conservado_id
+    FROM pagos p
+    WINDOW w AS (PARTITION BY p.pedido_id
+                 ORDER BY CASE p.estado WHEN 'PAGADO' THEN 0 WHEN 'PENDIENTE' THEN 2 ELSE 1 END, p.id)
+) r
+WHERE r.orden > 1;
+
+-- Solo se quitan de pagos los que ya están copiados
+DELETE p FROM pagos p
+JOIN pagos_duplicados d ON d.id = p.id AND d.pedido_id = p.pedido_id;
+
+-- La restricción pudo crearla ya hibernate (ddl-auto=update) en una tabla sin repetidos
+SET @existe = (SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'pagos' AND index_name = 'uk_pagos_pedido');
+SET @ddl = IF(@existe = 0, 'ALTER TABLE pagos ADD CONSTRAINT uk_pagos_pedido UNIQUE (pedido_id)', 'DO 0');
+PREPARE crear_uk FROM @ddl;
+EXECUTE crear_uk;
+DEALLOCATE PREPARE crear_uk;
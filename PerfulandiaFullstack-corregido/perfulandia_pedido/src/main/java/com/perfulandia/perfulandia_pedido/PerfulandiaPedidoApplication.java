@@ -3,8 +3,10 @@ package com.perfulandia.perfulandia_pedido;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PerfulandiaPedidoApplication {
     public static void main(String[] args) {
         SpringApplication.run(PerfulandiaPedidoApplication.class, args);
@@ -0,0 +1,23 @@
+package com.perfulandia.perfulandia_pedido.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // Pool para las validaciones remotas (usuario y stock) que se lanzan en paralelo
+    @Bean
+    public ThreadPoolTaskExecutor validacionExecutor(
+            @Value("${pedido.validacion.pool-size:32}") int poolSize,
+            @Value("${pedido.validacion.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("validacion-");
+        return executor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.perfulandia.perfulandia_pedido.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${pedido.cache.usuarios.max-size:10000}")
+    private long usuariosMaxSize;
+
+    @Value("${pedido.cache.usuarios.ttl-positivo-seconds:300}")
+    private long ttlPositivoSeconds;
+
+    @Value("${pedido.cache.usuarios.ttl-negativo-seconds:30}")
+    private long ttlNegativoSeconds;
+
+    @Value("${pedido.fallback.stock-max-size:50000}")
+    private long stockMaxSize;
+
+    @Value("${pedido.fallback.stock-max-age-seconds:120}")
+    private long stockMaxAgeSeconds;
+
+    // Existencia de usuarios: los resultados negativos caducan antes que los positivos
+    @Bean
+    public Cache<Integer, Boolean> usuarioCache(MeterRegistry registry) {
+        long positivoNanos = Duration.ofSeconds(ttlPositivoSeconds).toNanos();
+        long negativoNanos = Duration.ofSeconds(ttlNegativoSeconds).toNanos();
+        Cache<Integer, Boolean> cache = Caffeine.newBuilder()
+                .maximumSize(usuariosMaxSize)
+                .expireAfter(new Expiry<Integer, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(Integer key, Boolean existe, long currentTime) {
+                        return existe ? positivoNanos : negativoNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer key, Boolean existe, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, existe, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer key, Boolean existe, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(registry, cache, "usuarios");
+    }
+
+    // Último stock leído de inventario por producto, usado como fallback si inventario está degradado
+    @Bean
+    public Cache<Long, Integer> ultimoStock(MeterRegistry registry) {
+        Cache<Long, Integer> cache = Caffeine.newBuilder()
+                .maximumSize(stockMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(stockMaxAgeSeconds))
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(registry, cache, "ultimoStock");
+    }
+}
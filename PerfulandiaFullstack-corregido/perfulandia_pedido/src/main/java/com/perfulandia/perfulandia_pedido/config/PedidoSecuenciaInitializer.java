@@ -0,0 +1,25 @@
+package com.perfulandia.perfulandia_pedido.config;
+
+import com.perfulandia.perfulandia_pedido.model.Pedido;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Las filas creadas con AUTO_INCREMENT siguen en la tabla: la secuencia debe empezar después de ellas.
+// Con el optimizador pooled next_val es el extremo superior del bloque, de ahí el + ASIGNACION_IDS.
+@Component
+public class PedidoSecuenciaInitializer implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PedidoSecuenciaInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.update("UPDATE pedido_seq SET next_val = "
+                + "GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + ? FROM pedido))", Pedido.ASIGNACION_IDS);
+    }
+}
@@ -1,15 +1,68 @@
 package com.perfulandia.perfulandia_pedido.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
-    public static final String QUEUE = "pedido-inventario";
+    public static final String PAGO_QUEUE = "pedido-pago";
+    public static final String PAGO_DLQ = "pedido-pago.dlq";
+
+    // Eventos de inventario particionados por productoId: exchange directo con una cola durable por partición
+    // (routing key = número de partición). inventario.particiones debe coincidir con perfulandia_inventario.
+    public static final String INVENTARIO_EXCHANGE = "pedido-inventario.exchange";
+    public static final String INVENTARIO_QUEUE_PREFIX = "pedido-inventario-";
+    public static final String INVENTARIO_DLQ = "pedido-inventario.dlq";
+
+    @Bean
+    public Declarables inventarioParticiones(@Value("${inventario.particiones:8}") int particiones) {
+        DirectExchange exchange = new DirectExchange(INVENTARIO_EXCHANGE, true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        for (int i = 0; i < particiones; i++) {
+            // Los argumentos (dead letter hacia pedido-inventario.dlq) deben coincidir con perfulandia_inventario
+            Queue queue = QueueBuilder.durable(INVENTARIO_QUEUE_PREFIX + i)
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(INVENTARIO_DLQ)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(String.valueOf(i)));
+        }
+        return new Declarables(declarables);
+    }
+
+    // Misma partición para un producto siempre: sus ajustes se consumen en orden y por un solo hilo
+    public static int particion(long productoId, int particiones) {
+        long h = productoId * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (h ^ (h >>> 32)), particiones);
+    }
+
+    // Cola durable: los pagos pendientes sobreviven a un reinicio del broker. Los argumentos
+    // (dead letter hacia pedido-pago.dlq) deben coincidir con la declaración de perfulandia_pago.
+    @Bean
+    public Queue pagoQueue() {
+        return QueueBuilder.durable(PAGO_QUEUE)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(PAGO_DLQ)
+                .build();
+    }
 
+    // Usado por RabbitTemplate: los EventoInventario viajan en binario (o JSON si formato=json)
     @Bean
-    public Queue queue() {
-        return new Queue(QUEUE, false);
+    public MessageConverter eventoInventarioConverter(ObjectMapper objectMapper,
+            @Value("${pedido.inventario.formato:binario}") String formato) {
+        return new EventoInventarioConverter(objectMapper, !"json".equalsIgnoreCase(formato));
     }
 }
@@ -1,40 +1,70 @@
 package com.perfulandia.perfulandia_pedido.controller;
 
-import com.perfulandia.perfulandia_pedido.model.PagoRequest;
 import com.perfulandia.perfulandia_pedido.model.Pedido;
 import com.perfulandia.perfulandia_pedido.model.Producto;
+import com.perfulandia.perfulandia_pedido.model.ResultadoBatch;
+import com.perfulandia.perfulandia_pedido.service.PedidoBatchService;
 import com.perfulandia.perfulandia_pedido.service.PedidoService;
+import com.perfulandia.perfulandia_pedido.service.ServicioNoDisponibleException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.util.ReflectionUtils;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/pedidos")
 public class PedidoController {
+    private static final int MAX_LIMIT = 1000;
 
     @Autowired
     private PedidoService pedidoService;
 
+    @Autowired
+    private PedidoBatchService pedidoBatchService;
+
+    // Página de pedidos con id > after; la cabecera X-Next-After trae el cursor de la siguiente página
     @GetMapping
-    public List<Pedido> listarPedidos() {
-        return pedidoService.listarPedidos();
+    public ResponseEntity<List<Pedido>> listarPedidos(
+            @RequestParam(defaultValue = "0") int after,
+            @RequestParam(defaultValue = "100") int limit) {
+        int tamano = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<Pedido> pedidos = pedidoService.listarPedidos(after, tamano);
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (pedidos.size() == tamano) {
+            respuesta.header("X-Next-After", String.valueOf(pedidos.get(pedidos.size() - 1).getId()));
+        }
+        return respuesta.body(pedidos);
+    }
+
+    // Exportación completa en NDJSON con memoria constante
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportarPedidos() {
+        StreamingResponseBody cuerpo = pedidoService::exportarPedidos;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(cuerpo);
     }
 
     @PostMapping
     public ResponseEntity<?> crearPedido(@RequestBody Pedido pedido) {
         int usuarioId = Integer.parseInt(pedido.getCliente());
-        if (!pedidoService.usuarioExiste(usuarioId)) {
+        Long productoId = Long.parseLong(pedido.getProducto());
+
+        // Validar usuario y stock en paralelo, una sola vez por pedido
+        CompletableFuture<Boolean> usuarioFuture = pedidoService.usuarioExisteAsync(usuarioId);
+        CompletableFuture<Integer> stockFuture = pedidoService.consultarStockProductoAsync(productoId);
+
+        if (!PedidoService.esperar(usuarioFuture)) {
             return ResponseEntity.badRequest().body("El usuario no existe, no se puede crear el pedido.");
         }
 
         // Validar stock antes de crear el pedido
-        Long productoId = Long.parseLong(pedido.getProducto());
-        Integer stock = pedidoService.consultarStockProducto(productoId);
+        Integer stock = PedidoService.esperar(stockFuture);
         if (stock == null) {
             return ResponseEntity.status(404).body("Producto no encontrado en inventario");
         }
@@ -42,19 +72,18 @@ public class PedidoController {
             return ResponseEntity.status(409).body("Stock insuficiente. Disponible: " + stock);
         }
 
-        Pedido nuevoPedido = pedidoService.crearPedido(pedido);
-
-        // Registrar el pago
-        PagoRequest pago = new PagoRequest();
-        pago.setPedidoId((long) nuevoPedido.getId());
-        pago.setMonto(nuevoPedido.getTotal());
-        pago.setMetodo("EFECTIVO");
-        pago.setEstado("PENDIENTE");
-        pedidoService.registrarPago(pago);
+        // El pago y el aviso al inventario se entregan desde el outbox tras el commit
+        Pedido nuevoPedido = pedidoService.guardarPedidoConPago(pedido);
 
         return ResponseEntity.ok(nuevoPedido);
     }
 
+    // Carga masiva: valida usuarios y stock en bloque y guarda los pedidos válidos con inserts en batch
+    @PostMapping("/batch")
+    public ResultadoBatch crearPedidosBatch(@RequestBody List<Pedido> pedidos) {
+        return pedidoBatchService.crearPedidos(pedidos);
+    }
+
     @GetMapping("/{id}")
     public Pedido buscarPedido(@PathVariable int id) {
         return pedidoService.buscarPedido(id);
@@ -70,6 +99,7 @@ public class PedidoController {
         pedidoService.eliminarPedido(id);
     }
 
+    // Como el PUT: modifica el pedido sin volver a descontar su stock en el inventario
     @PatchMapping("/{id}")
     public Pedido actualizarParcialmentePedido(@PathVariable int id, @RequestBody Map<String, Object> updates) {
         Pedido pedido = pedidoService.buscarPedido(id);
@@ -83,7 +113,13 @@ public class PedidoController {
                 ReflectionUtils.setField(field, pedido, value);
             }
         });
-        return pedidoService.crearPedido(pedido);
+        return pedidoService.actualizarPedido(id, pedido);
+    }
+
+    // Usuario o inventario caídos sin fallback: no es culpa del cliente, que puede reintentar
+    @ExceptionHandler(ServicioNoDisponibleException.class)
+    public ResponseEntity<String> servicioNoDisponible(ServicioNoDisponibleException e) {
+        return ResponseEntity.status(503).header("Retry-After", "10").body(e.getMessage());
     }
 
     // --- Nuevo endpoint para obtener productos desde Pedido ---
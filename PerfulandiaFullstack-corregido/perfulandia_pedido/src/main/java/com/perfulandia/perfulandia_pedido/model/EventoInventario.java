@@ -0,0 +1,11 @@
+package com.perfulandia.perfulandia_pedido.model;
+
+import java.util.List;
+
+// Descuento de stock de un pedido (pedidoId = 0 si agrupa varios pedidos); una línea por producto
+public record EventoInventario(long pedidoId, List<Linea> lineas) {
+    public static final int VERSION = 1;
+
+    public record Linea(long productoId, int cantidad) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.perfulandia.perfulandia_pedido.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "pedido_outbox", indexes = {
+        @Index(name = "idx_outbox_pedido", columnList = "pedidoId"),
+        @Index(name = "idx_outbox_proximo", columnList = "proximoIntento, id")
+})
+@Data
+@NoArgsConstructor
+public class OutboxEvento {
+    public enum Tipo { INVENTARIO, PAGO }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Los eventos de un mismo pedido se entregan en orden de id; null si no pertenece a un solo pedido
+    private Integer pedidoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Tipo tipo;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    private int intentos;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date proximoIntento;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creado;
+
+    public OutboxEvento(Integer pedidoId, Tipo tipo, String payload) {
+        this.pedidoId = pedidoId;
+        this.tipo = tipo;
+        this.payload = payload;
+        this.creado = new Date();
+        this.proximoIntento = this.creado;
+    }
+}
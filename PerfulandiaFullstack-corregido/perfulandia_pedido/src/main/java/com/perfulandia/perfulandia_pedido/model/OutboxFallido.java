@@ -0,0 +1,50 @@
+package com.perfulandia.perfulandia_pedido.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+// Evento que salió del outbox sin entregarse: ilegible o sin confirmar tras pedido.outbox.max-intentos.
+// Se conserva con el mismo id para revisarlo y, si procede, volver a insertarlo en pedido_outbox a mano.
+@Entity
+@Table(name = "pedido_outbox_fallido")
+@Data
+@NoArgsConstructor
+public class OutboxFallido {
+    @Id
+    private Long id;
+
+    private Integer pedidoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxEvento.Tipo tipo;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    private int intentos;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date creado;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fallido;
+
+    @Column(length = 1000)
+    private String motivo;
+
+    public OutboxFallido(OutboxEvento evento, String motivo, Date fallido) {
+        this.id = evento.getId();
+        this.pedidoId = evento.getPedidoId();
+        this.tipo = evento.getTipo();
+        this.payload = evento.getPayload();
+        this.intentos = evento.getIntentos();
+        this.creado = evento.getCreado();
+        this.fallido = fallido;
+        this.motivo = motivo != null && motivo.length() > 1000 ? motivo.substring(0, 1000) : motivo;
+    }
+}
@@ -6,8 +6,12 @@ import java.util.Date;
 @Entity
 @Table(name = "pedido")
 public class Pedido {
+    public static final int ASIGNACION_IDS = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con optimizador pooled: IDENTITY impide los inserts en batch de Hibernate
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedido_seq")
+    @SequenceGenerator(name = "pedido_seq", sequenceName = "pedido_seq", allocationSize = ASIGNACION_IDS)
     private int id;
 
     private String cliente;
@@ -0,0 +1,21 @@
+package com.perfulandia.perfulandia_pedido.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ResultadoBatch {
+    private int recibidos;
+    private List<Integer> creados = new ArrayList<>();
+    private List<Rechazo> rechazados = new ArrayList<>();
+
+    @Data
+    public static class Rechazo {
+        private final int indice;
+        private final String motivo;
+        // true si no se pudo validar (usuario o inventario degradado): el pedido puede reenviarse tal cual
+        private final boolean reintentable;
+    }
+}
@@ -0,0 +1,9 @@
+package com.perfulandia.perfulandia_pedido.repository;
+
+import com.perfulandia.perfulandia_pedido.model.OutboxFallido;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxFallidoRepository extends JpaRepository<OutboxFallido, Long> {
+}
@@ -0,0 +1,27 @@
+package com.perfulandia.perfulandia_pedido.repository;
+
+import com.perfulandia.perfulandia_pedido.model.OutboxEvento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEvento, Long> {
+    // Eventos vencidos que ninguna otra réplica tiene bloqueados. De cada pedido solo entra el más
+    // antiguo pendiente, así los de un mismo pedido se entregan en orden aunque haya varias réplicas.
+    // Debe llamarse dentro de una transacción que marque después las filas con reclamar.
+    @Query(value = "SELECT * FROM pedido_outbox e WHERE e.proximo_intento <= :ahora "
+            + "AND (e.pedido_id IS NULL OR NOT EXISTS (SELECT 1 FROM pedido_outbox a "
+            + "WHERE a.pedido_id = e.pedido_id AND a.id < e.id)) "
+            + "ORDER BY e.proximo_intento, e.id LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvento> bloquearVencidos(Date ahora, int limite);
+
+    // Alquiler: hasta esa fecha las demás réplicas no ven los eventos; si esta cae, vuelven a vencer
+    @Modifying
+    @Query("UPDATE OutboxEvento e SET e.proximoIntento = :hasta WHERE e.id IN :ids")
+    int reclamar(List<Long> ids, Date hasta);
+}
@@ -2,9 +2,14 @@
 package com.perfulandia.perfulandia_pedido.repository;
 
 import com.perfulandia.perfulandia_pedido.model.Pedido;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Integer> {
+    // Paginación por cursor (keyset): usa el índice de la PK en vez de OFFSET
+    List<Pedido> findByIdGreaterThanOrderByIdAsc(int after, Pageable pageable);
 }
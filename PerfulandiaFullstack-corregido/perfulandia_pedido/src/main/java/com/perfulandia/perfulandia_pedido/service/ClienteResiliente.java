@@ -0,0 +1,128 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Envuelve las llamadas a otros microservicios con bulkhead, circuit breaker y time limiter
+// (configurados por dependencia en resilience4j.*.instances.<nombre>). Todas se ejecutan en
+// validacionExecutor: la suma de los bulkheads no debe pasar de pedido.validacion.pool-size.
+@Component
+public class ClienteResiliente {
+    public static final String USUARIO = "usuario";
+    public static final String INVENTARIO = "inventario";
+    // Bulkhead aparte (con espera) para las validaciones de POST /batch: no agota el del camino normal
+    public static final String USUARIO_LOTE = "usuario-lote";
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    private final ThreadPoolTaskExecutor validacionExecutor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public ClienteResiliente(CircuitBreakerRegistry circuitBreakerRegistry,
+                             BulkheadRegistry bulkheadRegistry,
+                             TimeLimiterRegistry timeLimiterRegistry,
+                             ThreadPoolTaskExecutor validacionExecutor) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.validacionExecutor = validacionExecutor;
+    }
+
+    // El futuro falla con CallNotPermittedException, BulkheadFullException o TimeoutException
+    // cuando la dependencia está degradada; el llamador decide el fallback
+    public <T> CompletableFuture<T> ejecutar(String dependencia, Supplier<T> llamada) {
+        return ejecutar(dependencia, dependencia, llamada);
+    }
+
+    // Mismo circuit breaker y time limiter que la dependencia, con otro bulkhead. El bulkhead va
+    // por fuera del circuit breaker: un rechazo por bulkhead lleno no cuenta como fallo de la dependencia.
+    public <T> CompletableFuture<T> ejecutar(String dependencia, String nombreBulkhead, Supplier<T> llamada) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(dependencia);
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(nombreBulkhead);
+        TimeLimiter timeLimiter = timeLimiterRegistry.timeLimiter(dependencia);
+
+        if (!bulkhead.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(BulkheadFullException.createBulkheadFullException(bulkhead));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.onComplete();
+            return CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+        }
+        long inicio = System.nanoTime();
+        CompletableFuture<T> resultado = conPlazo(timeLimiter, bulkhead, llamada);
+        resultado.whenComplete((valor, error) -> {
+            long duracion = System.nanoTime() - inicio;
+            if (error == null) {
+                circuitBreaker.onSuccess(duracion, TimeUnit.NANOSECONDS);
+            } else {
+                circuitBreaker.onError(duracion, TimeUnit.NANOSECONDS, error);
+            }
+        });
+        return resultado;
+    }
+
+    // El plazo del time limiter cuenta desde que se envía la llamada, con la espera en la cola de
+    // validacionExecutor incluida; si vence en la cola la llamada ya no se hace. El permiso del
+    // bulkhead se devuelve al terminar la tarea del pool y no al vencer el plazo, así los bulkheads
+    // limitan los hilos ocupados de verdad. Con el pool lleno el futuro falla con
+    // RejectedExecutionException en lugar de lanzarla.
+    private <T> CompletableFuture<T> conPlazo(TimeLimiter timeLimiter, Bulkhead bulkhead, Supplier<T> llamada) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        long plazoNanos = timeLimiter.getTimeLimiterConfig().getTimeoutDuration().toNanos();
+        ScheduledFuture<?> vencimiento = scheduler.schedule(() -> {
+            TimeoutException e = TimeLimiter.createdTimeoutExceptionWithName(timeLimiter.getName(), null);
+            if (resultado.completeExceptionally(e)) {
+                timeLimiter.onError(e);
+            }
+        }, plazoNanos, TimeUnit.NANOSECONDS);
+        try {
+            validacionExecutor.execute(() -> {
+                try {
+                    if (resultado.isDone()) {
+                        return;
+                    }
+                    T valor = llamada.get();
+                    if (resultado.complete(valor)) {
+                        timeLimiter.onSuccess();
+                    }
+                } catch (RuntimeException e) {
+                    if (resultado.completeExceptionally(e)) {
+                        timeLimiter.onError(e);
+                    }
+                } finally {
+                    vencimiento.cancel(false);
+                    bulkhead.onComplete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            vencimiento.cancel(false);
+            bulkhead.onComplete();
+            resultado.completeExceptionally(e);
+        }
+        return resultado;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        scheduler.shutdownNow();
+    }
+}
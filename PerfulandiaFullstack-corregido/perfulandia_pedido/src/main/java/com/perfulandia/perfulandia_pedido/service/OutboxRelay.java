@@ -0,0 +1,194 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.perfulandia_pedido.model.EventoInventario;
+import com.perfulandia.perfulandia_pedido.model.OutboxEvento;
+import com.perfulandia.perfulandia_pedido.model.OutboxFallido;
+import com.perfulandia.perfulandia_pedido.repository.OutboxFallidoRepository;
+import com.perfulandia.perfulandia_pedido.repository.OutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Vacía la tabla outbox en lotes hacia las colas de inventario y de pagos. Con varias réplicas cada
+// una reclama sus filas (SKIP LOCKED + alquiler sobre proximoIntento), así no publican lo mismo.
+// Un evento ilegible, o que sigue sin confirmarse tras max-intentos, pasa a pedido_outbox_fallido:
+// no se reintenta para siempre ni bloquea los eventos posteriores de su pedido.
+@Service
+public class OutboxRelay {
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxFallidoRepository outboxFallidoRepository;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${pedido.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${pedido.outbox.backoff-inicial-ms:1000}")
+    private long backoffInicialMs;
+
+    @Value("${pedido.outbox.backoff-max-ms:60000}")
+    private long backoffMaxMs;
+
+    @Value("${pedido.outbox.max-intentos:500}")
+    private int maxIntentos;
+
+    // Mayor que lo que tarda en confirmarse un lote (pedido.rabbit.confirm-timeout-ms)
+    @Value("${pedido.outbox.alquiler-ms:30000}")
+    private long alquilerMs;
+
+    @Scheduled(fixedDelayString = "${pedido.outbox.intervalo-ms:200}")
+    public void drenar() {
+        List<OutboxEvento> eventos;
+        do {
+            eventos = reclamar();
+            if (eventos.isEmpty() || procesar(eventos) == 0) {
+                return;
+            }
+        } while (eventos.size() == batchSize);
+    }
+
+    // Transacción corta: bloquea las filas vencidas libres y las alquila antes de publicar
+    private List<OutboxEvento> reclamar() {
+        return transactionTemplate.execute(status -> {
+            Date ahora = new Date();
+            List<OutboxEvento> eventos = outboxRepository.bloquearVencidos(ahora, batchSize);
+            if (!eventos.isEmpty()) {
+                List<Long> ids = new ArrayList<>(eventos.size());
+                for (OutboxEvento evento : eventos) {
+                    ids.add(evento.getId());
+                }
+                outboxRepository.reclamar(ids, new Date(ahora.getTime() + alquilerMs));
+            }
+            return eventos;
+        });
+    }
+
+    // Publica el lote sin esperar evento a evento y luego recoge las confirmaciones del broker.
+    // Solo se borra del outbox lo confirmado; lo demás se reprograma con backoff o, si no tiene
+    // arreglo, se mueve a pedido_outbox_fallido. Como mucho hay un evento por pedido en el lote: los
+    // posteriores no se reclaman hasta que se borra este.
+    private int procesar(List<OutboxEvento> eventos) {
+        Map<OutboxEvento, CompletableFuture<Void>> enVuelo = new LinkedHashMap<>();
+        for (OutboxEvento evento : eventos) {
+            CompletableFuture<Void> confirmacion;
+            try {
+                confirmacion = entregar(evento);
+            } catch (RuntimeException e) {
+                confirmacion = CompletableFuture.failedFuture(e);
+            }
+            enVuelo.put(evento, confirmacion);
+        }
+
+        Date ahora = new Date();
+        List<Long> enviados = new ArrayList<>();
+        List<OutboxEvento> fallidos = new ArrayList<>();
+        List<OutboxFallido> descartados = new ArrayList<>();
+        enVuelo.forEach((evento, confirmacion) -> {
+            try {
+                confirmacion.join();
+                enviados.add(evento.getId());
+            } catch (CompletionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                if (causa instanceof EventoIlegible || evento.getIntentos() + 1 >= maxIntentos) {
+                    evento.setIntentos(evento.getIntentos() + 1);
+                    System.err.println("ERROR evento outbox " + evento.getId() + " (" + evento.getTipo() + ", pedido "
+                            + evento.getPedidoId() + ") movido a pedido_outbox_fallido tras " + evento.getIntentos()
+                            + " intentos: " + causa.getMessage());
+                    descartados.add(new OutboxFallido(evento, causa.getMessage(), ahora));
+                    return;
+                }
+                System.out.println("Error entregando evento outbox " + evento.getId() + ": " + causa.getMessage());
+                programarReintento(evento, ahora);
+                fallidos.add(evento);
+            }
+        });
+
+        if (!enviados.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(enviados);
+        }
+        if (!fallidos.isEmpty()) {
+            outboxRepository.saveAll(fallidos);
+        }
+        if (!descartados.isEmpty()) {
+            List<Long> ids = new ArrayList<>(descartados.size());
+            for (OutboxFallido descartado : descartados) {
+                ids.add(descartado.getId());
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                outboxFallidoRepository.saveAll(descartados);
+                outboxRepository.deleteAllByIdInBatch(ids);
+            });
+        }
+        // Los descartados también cuentan: han salido del outbox y el siguiente lote puede avanzar
+        return enviados.size() + descartados.size();
+    }
+
+    private CompletableFuture<Void> entregar(OutboxEvento evento) {
+        return switch (evento.getTipo()) {
+            case INVENTARIO -> pedidoService.enviarEventoInventario(leerEventoInventario(evento.getPayload()), evento.getId());
+            case PAGO -> pedidoService.registrarPago(evento.getPayload());
+        };
+    }
+
+    private EventoInventario leerEventoInventario(String payload) {
+        if (payload == null || payload.isBlank()) {
+            throw new EventoIlegible("Evento de inventario vacío en el outbox");
+        }
+        if (!payload.startsWith("{")) {
+            // Filas antiguas del outbox con el formato "productoId:cantidad"
+            int separador = payload.indexOf(':');
+            if (separador <= 0 || separador == payload.length() - 1) {
+                throw new EventoIlegible("Evento de inventario antiguo sin formato productoId:cantidad: " + payload);
+            }
+            try {
+                long productoId = Long.parseLong(payload.substring(0, separador).trim());
+                int cantidad = Integer.parseInt(payload.substring(separador + 1).trim());
+                return new EventoInventario(0, List.of(new EventoInventario.Linea(productoId, cantidad)));
+            } catch (NumberFormatException e) {
+                throw new EventoIlegible("Evento de inventario antiguo con números no válidos: " + payload);
+            }
+        }
+        try {
+            return objectMapper.readValue(payload, EventoInventario.class);
+        } catch (JsonProcessingException e) {
+            throw new EventoIlegible("Evento de inventario ilegible en el outbox: " + e.getOriginalMessage());
+        }
+    }
+
+    private void programarReintento(OutboxEvento evento, Date ahora) {
+        int intentos = evento.getIntentos() + 1;
+        long espera = Math.min(backoffMaxMs, backoffInicialMs << Math.min(intentos - 1, 20));
+        evento.setIntentos(intentos);
+        evento.setProximoIntento(new Date(ahora.getTime() + espera));
+    }
+
+    // Payload que no se podrá leer nunca: no se reintenta
+    private static final class EventoIlegible extends RuntimeException {
+        private EventoIlegible(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
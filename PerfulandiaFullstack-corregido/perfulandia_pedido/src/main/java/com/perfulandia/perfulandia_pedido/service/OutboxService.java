@@ -0,0 +1,51 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.perfulandia_pedido.model.EventoInventario;
+import com.perfulandia.perfulandia_pedido.model.OutboxEvento;
+import com.perfulandia.perfulandia_pedido.model.PagoRequest;
+import com.perfulandia.perfulandia_pedido.repository.OutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Registra los efectos secundarios de un pedido en la misma transacción que el pedido
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // El evento se guarda en JSON; OutboxRelay lo publica con el formato compacto configurado
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarInventario(EventoInventario evento) {
+        Integer pedidoId = evento.pedidoId() != 0 ? (int) evento.pedidoId() : null;
+        outboxRepository.save(new OutboxEvento(pedidoId, OutboxEvento.Tipo.INVENTARIO, serializar(evento)));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarInventario(int pedidoId, Long productoId, int cantidad) {
+        registrarInventario(new EventoInventario(pedidoId, List.of(new EventoInventario.Linea(productoId, cantidad))));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarPago(PagoRequest pago) {
+        String payload = serializar(pago);
+        outboxRepository.save(new OutboxEvento(pago.getPedidoId().intValue(), OutboxEvento.Tipo.PAGO, payload));
+    }
+
+    private String serializar(Object evento) {
+        try {
+            return objectMapper.writeValueAsString(evento);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento del outbox", e);
+        }
+    }
+}
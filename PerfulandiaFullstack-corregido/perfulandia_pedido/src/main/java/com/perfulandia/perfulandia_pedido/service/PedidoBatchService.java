@@ -0,0 +1,176 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+import com.perfulandia.perfulandia_pedido.model.EventoInventario;
+import com.perfulandia.perfulandia_pedido.model.Pedido;
+import com.perfulandia.perfulandia_pedido.model.ResultadoBatch;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+@Service
+public class PedidoBatchService {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+
+    // Consultas remotas en vuelo a la vez por lote; el resto espera su turno en este hilo
+    @Value("${pedido.batch.max-consultas-concurrentes:8}")
+    private int maxConsultasConcurrentes;
+
+    // Ids por GET /api/inventario?productoIds= (inventario admite hasta 1000; la URL debe caber en la línea de petición)
+    @Value("${pedido.batch.productos-por-consulta:500}")
+    private int productosPorConsulta;
+
+    public ResultadoBatch crearPedidos(List<Pedido> pedidos) {
+        ResultadoBatch resultado = new ResultadoBatch();
+        resultado.setRecibidos(pedidos.size());
+
+        // Usuarios: una consulta por usuario distinto, con como mucho maxConsultasConcurrentes en vuelo
+        // sobre su propio bulkhead. Stock: una consulta en bloque por cada productosPorConsulta productos.
+        Semaphore enVuelo = new Semaphore(maxConsultasConcurrentes);
+        Map<Integer, CompletableFuture<Boolean>> usuarios = new HashMap<>();
+        Set<Long> productoIds = new LinkedHashSet<>();
+        for (Pedido pedido : pedidos) {
+            try {
+                usuarios.computeIfAbsent(Integer.parseInt(pedido.getCliente()),
+                        id -> limitada(enVuelo, () -> pedidoService.verificarUsuarioAsync(id)));
+                productoIds.add(Long.parseLong(pedido.getProducto()));
+            } catch (NumberFormatException e) {
+                // se rechaza más abajo
+            }
+        }
+        List<Long> ids = new ArrayList<>(productoIds);
+        Map<List<Long>, CompletableFuture<Map<Long, Integer>>> consultasStock = new LinkedHashMap<>();
+        for (int desde = 0; desde < ids.size(); desde += productosPorConsulta) {
+            List<Long> trozo = ids.subList(desde, Math.min(desde + productosPorConsulta, ids.size()));
+            consultasStock.put(trozo, limitada(enVuelo, () -> pedidoService.consultarStocksAsync(trozo)));
+        }
+        Map<Long, Integer> stockRestante = new HashMap<>();
+        Set<Long> stockDesconocido = new HashSet<>();
+        consultasStock.forEach((trozo, consulta) -> {
+            try {
+                stockRestante.putAll(consulta.join());
+            } catch (CompletionException e) {
+                stockDesconocido.addAll(trozo);
+            }
+        });
+
+        List<Pedido> validos = new ArrayList<>();
+        for (int i = 0; i < pedidos.size(); i++) {
+            Pedido pedido = pedidos.get(i);
+            ResultadoBatch.Rechazo rechazo = validar(i, pedido, usuarios, stockRestante, stockDesconocido);
+            if (rechazo != null) {
+                resultado.getRechazados().add(rechazo);
+            } else {
+                validos.add(pedido);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            persistir(validos);
+            // Un único evento de inventario para todo el lote, una línea por producto con la cantidad total
+            Map<Long, Integer> cantidades = new LinkedHashMap<>();
+            for (Pedido pedido : validos) {
+                cantidades.merge(Long.parseLong(pedido.getProducto()), pedido.getCantidad(), Integer::sum);
+            }
+            if (!cantidades.isEmpty()) {
+                List<EventoInventario.Linea> lineas = new ArrayList<>(cantidades.size());
+                cantidades.forEach((productoId, cantidad) -> lineas.add(new EventoInventario.Linea(productoId, cantidad)));
+                outboxService.registrarInventario(new EventoInventario(0, lineas));
+            }
+        });
+
+        for (Pedido pedido : validos) {
+            resultado.getCreados().add(pedido.getId());
+        }
+        return resultado;
+    }
+
+    private static <T> CompletableFuture<T> limitada(Semaphore enVuelo, Supplier<CompletableFuture<T>> consulta) {
+        enVuelo.acquireUninterruptibly();
+        try {
+            return consulta.get().whenComplete((valor, error) -> enVuelo.release());
+        } catch (RuntimeException e) {
+            enVuelo.release();
+            throw e;
+        }
+    }
+
+    // Un usuario o un stock que no se pudo consultar no es un rechazo definitivo: se marca reintentable
+    private ResultadoBatch.Rechazo validar(int indice, Pedido pedido, Map<Integer, CompletableFuture<Boolean>> usuarios,
+                                           Map<Long, Integer> stockRestante, Set<Long> stockDesconocido) {
+        int usuarioId;
+        long productoId;
+        try {
+            usuarioId = Integer.parseInt(pedido.getCliente());
+            productoId = Long.parseLong(pedido.getProducto());
+        } catch (NumberFormatException e) {
+            return new ResultadoBatch.Rechazo(indice, "Cliente o producto con formato inválido", false);
+        }
+        // Una cantidad negativa sumaría stock al fusionarse en el evento del lote y anularía el descuento de otra línea
+        if (pedido.getCantidad() <= 0) {
+            return new ResultadoBatch.Rechazo(indice, "La cantidad debe ser mayor que cero", false);
+        }
+        Boolean existe = usuarios.get(usuarioId).join();
+        if (existe == null) {
+            return new ResultadoBatch.Rechazo(indice, "No se pudo verificar el usuario; reintentar", true);
+        }
+        if (!existe) {
+            return new ResultadoBatch.Rechazo(indice, "El usuario no existe", false);
+        }
+        if (stockDesconocido.contains(productoId)) {
+            return new ResultadoBatch.Rechazo(indice, "No se pudo consultar el stock; reintentar", true);
+        }
+        Integer stock = stockRestante.get(productoId);
+        if (stock == null) {
+            return new ResultadoBatch.Rechazo(indice, "Producto no encontrado en inventario", false);
+        }
+        if (stock < pedido.getCantidad()) {
+            return new ResultadoBatch.Rechazo(indice, "Stock insuficiente. Disponible: " + stock, false);
+        }
+        // Reservar el stock para los siguientes pedidos del mismo lote
+        stockRestante.put(productoId, stock - pedido.getCantidad());
+        return null;
+    }
+
+    // Inserta en bloques de batch_size y vacía el contexto para no acumular miles de entidades
+    private void persistir(List<Pedido> pedidos) {
+        for (int i = 0; i < pedidos.size(); i++) {
+            entityManager.persist(pedidos.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
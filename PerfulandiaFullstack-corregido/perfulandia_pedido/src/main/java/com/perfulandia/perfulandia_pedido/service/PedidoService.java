@@ -1,18 +1,46 @@
 package com.perfulandia.perfulandia_pedido.service;
 
+import com.perfulandia.perfulandia_pedido.model.EventoInventario;
 import com.perfulandia.perfulandia_pedido.model.Pedido;
 import com.perfulandia.perfulandia_pedido.model.Producto;
 import com.perfulandia.perfulandia_pedido.model.InventarioResponse;
 import com.perfulandia.perfulandia_pedido.model.PagoRequest;
 import com.perfulandia.perfulandia_pedido.repository.PedidoRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
 import com.perfulandia.perfulandia_pedido.config.RabbitMQConfig;
+import com.github.benmanes.caffeine.cache.Cache;
 
-import java.util.Arrays;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class PedidoService {
@@ -24,20 +52,102 @@ public class PedidoService {
     private RestTemplate restTemplate;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private PublicadorConfirmado publicador;
 
-    public List<Pedido> listarPedidos() {
-        return pedidoRepository.findAll();
+    @Autowired
+    private ClienteResiliente clienteResiliente;
+
+    @Autowired
+    private Cache<Integer, Boolean> usuarioCache;
+
+    @Autowired
+    private Cache<Long, Integer> ultimoStock;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Última versión del catálogo recibida de producto, con su ETag
+    private volatile CatalogoConocido catalogoConocido;
+
+    @Value("${inventario.particiones:8}")
+    private int particionesInventario;
+
+    @Value("${pedido.fallback.usuario-existe:false}")
+    private boolean usuarioFallbackExiste;
+
+    @Value("${pedido.fallback.stock-ultimo-conocido:true}")
+    private boolean stockFallbackUltimoConocido;
+
+    public List<Pedido> listarPedidos(int after, int limit) {
+        return pedidoRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
+    }
+
+    // Escribe todos los pedidos como NDJSON con un cursor JDBC de solo avance:
+    // con fetchSize = Integer.MIN_VALUE el driver de MySQL entrega las filas una a una
+    public void exportarPedidos(OutputStream out) throws IOException {
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            streaming.query("SELECT id, cliente, producto, cantidad, total, fecha FROM pedido ORDER BY id",
+                    (RowCallbackHandler) rs -> {
+                        try {
+                            gen.writeStartObject();
+                            gen.writeNumberField("id", rs.getInt("id"));
+                            gen.writeStringField("cliente", rs.getString("cliente"));
+                            gen.writeStringField("producto", rs.getString("producto"));
+                            gen.writeNumberField("cantidad", rs.getInt("cantidad"));
+                            gen.writeNumberField("total", rs.getDouble("total"));
+                            gen.writeObjectField("fecha", rs.getDate("fecha"));
+                            gen.writeEndObject();
+                            gen.writeRaw('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
+    // La consulta HTTP a usuarios va antes de abrir la transacción para no retener una conexión
+    // de BD mientras se espera a otro servicio
     public Pedido crearPedido(Pedido pedido) {
         // Suponiendo que pedido.getCliente() es el ID del usuario (ajusta si es necesario)
         int usuarioId = Integer.parseInt(pedido.getCliente());
         if (!usuarioExiste(usuarioId)) {
             throw new RuntimeException("El usuario no existe, no se puede crear el pedido.");
         }
+        return transactionTemplate.execute(status -> guardarPedido(pedido));
+    }
+
+    // Guarda un pedido ya validado por el llamador (sin volver a consultar el usuario).
+    // El aviso al inventario queda en el outbox y se envía tras el commit.
+    @Transactional
+    public Pedido guardarPedido(Pedido pedido) {
         Pedido nuevoPedido = pedidoRepository.save(pedido);
-        notificarInventario(Long.parseLong(nuevoPedido.getProducto()), nuevoPedido.getCantidad());
+        outboxService.registrarInventario(nuevoPedido.getId(), Long.parseLong(nuevoPedido.getProducto()), nuevoPedido.getCantidad());
+        return nuevoPedido;
+    }
+
+    // Igual que guardarPedido pero registrando además el pago pendiente en el outbox
+    @Transactional
+    public Pedido guardarPedidoConPago(Pedido pedido) {
+        Pedido nuevoPedido = guardarPedido(pedido);
+        PagoRequest pago = new PagoRequest();
+        pago.setPedidoId((long) nuevoPedido.getId());
+        pago.setMonto(nuevoPedido.getTotal());
+        pago.setMetodo("EFECTIVO");
+        pago.setEstado("PENDIENTE");
+        outboxService.registrarPago(pago);
         return nuevoPedido;
     }
 
@@ -63,41 +173,170 @@ public class PedidoService {
     }
 
     // --- Nuevo método para consumir productos ---
+    // GET condicional: si el catálogo no cambió, producto responde 304 sin cuerpo y se reutiliza la última lista
     public List<Producto> obtenerProductos() {
         String url = "http://localhost:8081/api/v1/productos";
-        Producto[] productos = restTemplate.getForObject(url, Producto[].class);
-        return Arrays.asList(productos);
+        CatalogoConocido conocido = catalogoConocido;
+        HttpHeaders headers = new HttpHeaders();
+        if (conocido != null) {
+            headers.setIfNoneMatch(conocido.etag());
+        }
+        ResponseEntity<Producto[]> respuesta = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Producto[].class);
+        if (respuesta.getStatusCode() == HttpStatus.NOT_MODIFIED && conocido != null) {
+            return conocido.productos();
+        }
+        List<Producto> productos = respuesta.getBody() != null ? List.of(respuesta.getBody()) : List.of();
+        String etag = respuesta.getHeaders().getETag();
+        catalogoConocido = etag != null ? new CatalogoConocido(etag, productos) : null;
+        return productos;
+    }
+
+    private record CatalogoConocido(String etag, List<Producto> productos) {
     }
 
     // Consultar stock de un producto en el microservicio de inventario
     public Integer consultarStockProducto(Long productoId) {
+        return esperar(consultarStockProductoAsync(productoId));
+    }
+
+    // null si el producto no está en inventario
+    private Integer leerStock(Long productoId) {
         String url = "http://localhost:8083/api/inventario/" + productoId;
         try {
             InventarioResponse inv = restTemplate.getForObject(url, InventarioResponse.class);
             return inv != null ? inv.getCantidadDisponible() : null;
-        } catch (Exception e) {
+        } catch (HttpClientErrorException.NotFound e) {
             return null;
         }
     }
 
-    public void registrarPago(PagoRequest pagoRequest) {
-        String url = "http://localhost:8084/api/pagos";
-        restTemplate.postForObject(url, pagoRequest, Void.class);
+    // Publica el pago (JSON) en la cola durable que consume perfulandia_pago; el futuro se completa con el ack
+    public CompletableFuture<Void> registrarPago(String pagoJson) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        Message mensaje = new Message(pagoJson.getBytes(StandardCharsets.UTF_8), properties);
+        return publicador.enviar("", RabbitMQConfig.PAGO_QUEUE, mensaje);
     }
 
     public boolean usuarioExiste(int usuarioId) {
+        return esperar(usuarioExisteAsync(usuarioId));
+    }
+
+    // join() que deja salir ServicioNoDisponibleException sin envolver en CompletionException
+    public static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ServicioNoDisponibleException noDisponible) {
+                throw noDisponible;
+            }
+            throw e;
+        }
+    }
+
+    // Los errores se propagan para que cuenten en el circuit breaker
+    private boolean consultarUsuario(int usuarioId) {
         String url = "http://localhost:8080/api/v1/usuarios/" + usuarioId;
         try {
-            // Si el usuario existe, devuelve un objeto; si no, lanza excepción o devuelve null
+            // Si el usuario existe, devuelve un objeto; si no, devuelve null o 404
             Object usuario = restTemplate.getForObject(url, Object.class);
             return usuario != null;
-        } catch (Exception e) {
+        } catch (HttpClientErrorException.NotFound e) {
             return false;
         }
     }
 
-    public void notificarInventario(Long productoId, int cantidad) {
-        String mensaje = productoId + ":" + cantidad;
-        rabbitTemplate.convertAndSend(RabbitMQConfig.QUEUE, mensaje);
+    // Los clientes recurrentes se resuelven desde la caché sin ir al servicio de usuarios.
+    // Si el servicio está degradado y pedido.fallback.usuario-existe=true se da por existente (sin
+    // guardarlo en caché); si no, el futuro falla con ServicioNoDisponibleException: "no se pudo
+    // comprobar" no es lo mismo que "no existe".
+    public CompletableFuture<Boolean> usuarioExisteAsync(int usuarioId) {
+        return usuarioEnCacheOConsultado(usuarioId, ClienteResiliente.USUARIO)
+                .exceptionally(e -> {
+                    if (usuarioFallbackExiste) {
+                        return true;
+                    }
+                    throw new ServicioNoDisponibleException(ClienteResiliente.USUARIO, e);
+                });
+    }
+
+    // Para POST /batch: sin fallback, null si no se pudo verificar (el pedido se marca para reintentar)
+    public CompletableFuture<Boolean> verificarUsuarioAsync(int usuarioId) {
+        return usuarioEnCacheOConsultado(usuarioId, ClienteResiliente.USUARIO_LOTE)
+                .exceptionally(e -> null);
+    }
+
+    private CompletableFuture<Boolean> usuarioEnCacheOConsultado(int usuarioId, String bulkhead) {
+        Boolean enCache = usuarioCache.getIfPresent(usuarioId);
+        if (enCache != null) {
+            return CompletableFuture.completedFuture(enCache);
+        }
+        return clienteResiliente.ejecutar(ClienteResiliente.USUARIO, bulkhead, () -> consultarUsuario(usuarioId))
+                .thenApply(existe -> {
+                    usuarioCache.put(usuarioId, existe);
+                    return existe;
+                });
+    }
+
+    // Stock de varios productos en una sola llamada (GET /api/inventario?productoIds=); los que no
+    // están en inventario no aparecen en el mapa. Sin fallback: el futuro falla si inventario está degradado.
+    public CompletableFuture<Map<Long, Integer>> consultarStocksAsync(List<Long> productoIds) {
+        return clienteResiliente.ejecutar(ClienteResiliente.INVENTARIO, () -> leerStocks(productoIds));
+    }
+
+    private Map<Long, Integer> leerStocks(List<Long> productoIds) {
+        StringBuilder url = new StringBuilder("http://localhost:8083/api/inventario?productoIds=");
+        for (int i = 0; i < productoIds.size(); i++) {
+            url.append(i > 0 ? "," : "").append(productoIds.get(i));
+        }
+        InventarioResponse[] inventarios = restTemplate.getForObject(url.toString(), InventarioResponse[].class);
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (inventarios != null) {
+            for (InventarioResponse inv : inventarios) {
+                if (inv.getProductoId() != null && inv.getCantidadDisponible() != null) {
+                    stocks.put(inv.getProductoId(), inv.getCantidadDisponible());
+                    ultimoStock.put(inv.getProductoId(), inv.getCantidadDisponible());
+                }
+            }
+        }
+        return stocks;
+    }
+
+    // null si el producto no está en inventario. Ante fallo de inventario se responde con el último
+    // stock conocido del producto; sin él, el futuro falla con ServicioNoDisponibleException.
+    public CompletableFuture<Integer> consultarStockProductoAsync(Long productoId) {
+        return clienteResiliente.ejecutar(ClienteResiliente.INVENTARIO, () -> leerStock(productoId))
+                .thenApply(stock -> {
+                    if (stock != null) {
+                        ultimoStock.put(productoId, stock);
+                    }
+                    return stock;
+                })
+                .exceptionally(e -> {
+                    Integer conocido = stockFallbackUltimoConocido ? ultimoStock.getIfPresent(productoId) : null;
+                    if (conocido == null) {
+                        throw new ServicioNoDisponibleException(ClienteResiliente.INVENTARIO, e);
+                    }
+                    return conocido;
+                });
+    }
+
+    // Lo usa OutboxRelay para publicar un evento ya registrado. Las líneas se reparten por
+    // partición de producto: un mensaje por partición con las líneas que le corresponden.
+    // El futuro se completa cuando el broker confirma todos los mensajes. La clave (id de la fila
+    // del outbox) va en el messageId de cada mensaje, "<clave>-<partición>": el reparto es
+    // determinista, así un reintento de la misma fila repite las mismas claves e inventario lo descarta.
+    public CompletableFuture<Void> enviarEventoInventario(EventoInventario evento, long clave) {
+        Map<Integer, List<EventoInventario.Linea>> porParticion = new TreeMap<>();
+        for (EventoInventario.Linea linea : evento.lineas()) {
+            int particion = RabbitMQConfig.particion(linea.productoId(), particionesInventario);
+            porParticion.computeIfAbsent(particion, p -> new ArrayList<>()).add(linea);
+        }
+        List<CompletableFuture<Void>> confirmaciones = new ArrayList<>(porParticion.size());
+        porParticion.forEach((particion, lineas) -> confirmaciones.add(publicador.enviar(
+                RabbitMQConfig.INVENTARIO_EXCHANGE, String.valueOf(particion),
+                new EventoInventario(evento.pedidoId(), lineas), clave + "-" + particion)));
+        return CompletableFuture.allOf(confirmaciones.toArray(new CompletableFuture[0]));
     }
 }
@@ -0,0 +1,122 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Publica sin esperar de forma síncrona a cada confirmación: cada envío lleva su CorrelationData y
+// el futuro devuelto se completa con el ack del broker. Las publicaciones sin confirmar están
+// limitadas por una ventana; un nack o un mensaje devuelto se reenvía hasta reenvios-max veces.
+@Component
+public class PublicadorConfirmado {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Semaphore ventana;
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private final ExecutorService reenvios = Executors.newSingleThreadExecutor();
+    private final Timer latenciaConfirm;
+    private final Counter nacks;
+    private final Counter reenviados;
+    private final int reenviosMax;
+    private final long confirmTimeoutMs;
+    private final long esperaVentanaMs;
+
+    public PublicadorConfirmado(RabbitTemplate rabbitTemplate, MeterRegistry registry,
+                                @Value("${pedido.rabbit.max-pendientes:1000}") int maxPendientes,
+                                @Value("${pedido.rabbit.reenvios-max:3}") int reenviosMax,
+                                @Value("${pedido.rabbit.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                                @Value("${pedido.rabbit.espera-ventana-ms:1000}") long esperaVentanaMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.ventana = new Semaphore(maxPendientes);
+        this.reenviosMax = reenviosMax;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.esperaVentanaMs = esperaVentanaMs;
+        this.latenciaConfirm = Timer.builder("pedido.rabbit.confirm.latencia")
+                .description("Tiempo entre la publicación y el ack del broker")
+                .register(registry);
+        this.nacks = Counter.builder("pedido.rabbit.confirm.nacks").register(registry);
+        this.reenviados = Counter.builder("pedido.rabbit.confirm.reenvios").register(registry);
+        Gauge.builder("pedido.rabbit.confirm.pendientes", pendientes, AtomicInteger::get)
+                .description("Publicaciones enviadas y aún sin confirmar")
+                .register(registry);
+    }
+
+    public CompletableFuture<Void> enviar(String exchange, String routingKey, Object contenido) {
+        return enviar(exchange, routingKey, contenido, null);
+    }
+
+    // messageId: clave con la que el consumidor descarta reentregas del mismo mensaje (null = sin clave)
+    public CompletableFuture<Void> enviar(String exchange, String routingKey, Object contenido, String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        Message mensaje = contenido instanceof Message m ? m
+                : rabbitTemplate.getMessageConverter().toMessage(contenido, properties);
+        try {
+            if (!ventana.tryAcquire(esperaVentanaMs, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(new AmqpException("Ventana de publicaciones sin confirmar llena"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        pendientes.incrementAndGet();
+        CompletableFuture<Void> resultado = new CompletableFuture<>();
+        publicar(exchange, routingKey, mensaje, 0, System.nanoTime(), resultado);
+        return resultado.orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((v, e) -> {
+                    pendientes.decrementAndGet();
+                    ventana.release();
+                });
+    }
+
+    private void publicar(String exchange, String routingKey, Message mensaje, int intento, long inicio,
+                          CompletableFuture<Void> resultado) {
+        CorrelationData correlacion = new CorrelationData(UUID.randomUUID().toString());
+        try {
+            rabbitTemplate.send(exchange, routingKey, mensaje, correlacion);
+        } catch (AmqpException e) {
+            resultado.completeExceptionally(e);
+            return;
+        }
+        // El callback llega en el hilo de la conexión: los reenvíos se hacen desde otro hilo
+        correlacion.getFuture().whenCompleteAsync((confirm, error) -> {
+            if (error == null && confirm.isAck() && correlacion.getReturned() == null) {
+                latenciaConfirm.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                resultado.complete(null);
+                return;
+            }
+            nacks.increment();
+            if (intento < reenviosMax && !resultado.isDone()) {
+                reenviados.increment();
+                publicar(exchange, routingKey, mensaje, intento + 1, inicio, resultado);
+            } else {
+                String motivo = error != null ? error.getMessage()
+                        : correlacion.getReturned() != null ? "mensaje devuelto: " + correlacion.getReturned().getReplyText()
+                        : confirm.getReason();
+                resultado.completeExceptionally(new AmqpException("Publicación no confirmada: " + motivo));
+            }
+        }, reenvios);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        reenvios.shutdown();
+    }
+}
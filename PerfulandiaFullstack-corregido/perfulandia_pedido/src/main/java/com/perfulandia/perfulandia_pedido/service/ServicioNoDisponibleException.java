@@ -0,0 +1,16 @@
+package com.perfulandia.perfulandia_pedido.service;
+
+// Una dependencia (usuario o inventario) no respondió o tiene el circuito abierto y no hay fallback:
+// no se sabe si el dato existe. PedidoController la responde con 503, nunca como 400/404.
+public class ServicioNoDisponibleException extends RuntimeException {
+    private final String dependencia;
+
+    public ServicioNoDisponibleException(String dependencia, Throwable causa) {
+        super("El servicio de " + dependencia + " no está disponible", causa);
+        this.dependencia = dependencia;
+    }
+
+    public String getDependencia() {
+        return dependencia;
+    }
+}
@@ -0,0 +1,46 @@
+package com.perfulandia.perfulandia_producto.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.perfulandia.perfulandia_producto.model.Producto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${producto.cache.max-size:10000}")
+    private long maxSize;
+
+    // Red de seguridad si se pierde un aviso de invalidación de otra réplica
+    @Value("${producto.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // Productos por id
+    @Bean
+    public Cache<Integer, Producto> productoCache(MeterRegistry registry) {
+        Cache<Integer, Producto> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(registry, cache, "productos");
+    }
+
+    // Foto del catálogo completo (una sola entrada)
+    @Bean
+    public Cache<String, List<Producto>> catalogoCache(MeterRegistry registry) {
+        Cache<String, List<Producto>> cache = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(registry, cache, "catalogo");
+    }
+}
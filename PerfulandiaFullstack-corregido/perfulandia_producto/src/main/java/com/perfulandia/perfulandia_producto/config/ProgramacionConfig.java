@@ -0,0 +1,23 @@
+package com.perfulandia.perfulandia_producto.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// Programador gestionado por Spring para las tareas periódicas (@Scheduled): se cancelan al destruir
+// su bean, antes que el DataSource, y el cierre espera a la que esté en curso.
+@Configuration
+@EnableScheduling
+public class ProgramacionConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("producto-programador-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
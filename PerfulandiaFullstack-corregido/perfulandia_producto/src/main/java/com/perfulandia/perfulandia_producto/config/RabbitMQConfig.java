@@ -0,0 +1,31 @@
+package com.perfulandia.perfulandia_producto.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+    // Cada réplica enlaza su propia cola anónima (exclusiva, se borra al desconectar) a este fanout.
+    // El nombre de esa cola identifica a la réplica: va como appId en sus avisos para que ella los ignore
+    public static final String INVALIDACION_EXCHANGE = "producto-cache.fanout";
+
+    @Bean
+    public FanoutExchange invalidacionExchange() {
+        return new FanoutExchange(INVALIDACION_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue invalidacionQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding invalidacionBinding(Queue invalidacionQueue, FanoutExchange invalidacionExchange) {
+        return BindingBuilder.bind(invalidacionQueue).to(invalidacionExchange);
+    }
+}
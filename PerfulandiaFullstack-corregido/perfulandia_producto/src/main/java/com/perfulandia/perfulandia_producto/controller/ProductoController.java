@@ -1,22 +1,144 @@
 package com.perfulandia.perfulandia_producto.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.perfulandia.perfulandia_producto.model.Producto;
+import com.perfulandia.perfulandia_producto.service.CatalogoSerializado;
+import com.perfulandia.perfulandia_producto.service.ImportadorProductos;
+import com.perfulandia.perfulandia_producto.service.IndiceProductos;
 import com.perfulandia.perfulandia_producto.service.ProductoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1/productos")
 public class ProductoController {
+    private static final int MAX_RESULTADOS = 1000;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private CatalogoSerializado catalogoSerializado;
+
+    @Autowired
+    private ImportadorProductos importadorProductos;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Catálogo desde los bytes ya serializados: 304 si el cliente tiene la misma versión (en
+    // cualquiera de sus variantes), gzip si lo acepta. La variante gzip tiene su propio ETag
     @GetMapping
-    public List<Producto> listarProductos() {
-        return productoService.listarProductos();
+    public ResponseEntity<byte[]> listarProductos(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CatalogoSerializado.Version version = catalogoSerializado.obtener();
+        boolean gzip = CatalogoSerializado.aceptaGzip(acceptEncoding);
+        String etag = gzip ? version.etagGzip() : version.etag();
+        // El 304 lleva las mismas cabeceras de caché que llevaría el 200
+        if (CatalogoSerializado.coincide(ifNoneMatch, version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(version.gzip());
+        }
+        return respuesta.body(version.json());
+    }
+
+    // Listado paginado por clave (se activa con limit): ?limit=&sort=&after=&fields=id,nombre,precio.
+    // after es el campo "siguiente" de la página anterior.
+    @GetMapping(params = "limit")
+    public ResponseEntity<?> listarPagina(@RequestParam int limit,
+                                          @RequestParam(defaultValue = "id") String sort,
+                                          @RequestParam(required = false) String after,
+                                          @RequestParam(required = false) String fields) {
+        if (!ProductoService.ORDENES_PAGINA.contains(sort)) {
+            return ResponseEntity.badRequest().body("sort debe ser uno de " + ProductoService.ORDENES_PAGINA);
+        }
+        Set<String> campos = ProductoService.CAMPOS;
+        if (fields != null && !fields.isBlank()) {
+            campos = new HashSet<>();
+            for (String campo : fields.split(",")) {
+                campos.add(campo.trim());
+            }
+            if (!ProductoService.CAMPOS.containsAll(campos)) {
+                return ResponseEntity.badRequest().body("fields admite " + ProductoService.CAMPOS);
+            }
+        }
+        try {
+            return ResponseEntity.ok(productoService.listarPagina(sort, after,
+                    Math.max(1, Math.min(limit, MAX_RESULTADOS)), campos));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Cursor after no válido");
+        }
+    }
+
+    // Búsqueda sobre el índice en memoria; sort: precio, -precio, nombre o -nombre
+    @GetMapping("/search")
+    public ResponseEntity<?> buscarProductos(@RequestParam(required = false) String q,
+                                             @RequestParam(required = false) Double minPrecio,
+                                             @RequestParam(required = false) Double maxPrecio,
+                                             @RequestParam(required = false) String sort,
+                                             @RequestParam(defaultValue = "100") int limit) {
+        if (sort != null && !IndiceProductos.ORDENES.contains(sort)) {
+            return ResponseEntity.badRequest().body("sort debe ser uno de " + IndiceProductos.ORDENES);
+        }
+        if (minPrecio != null && maxPrecio != null && minPrecio > maxPrecio) {
+            return ResponseEntity.badRequest().body("minPrecio no puede ser mayor que maxPrecio");
+        }
+        return ResponseEntity.ok(productoService.buscarProductos(q, minPrecio, maxPrecio, sort,
+                Math.max(1, Math.min(limit, MAX_RESULTADOS))));
+    }
+
+    // Importación masiva en streaming (text/csv con cabecera o application/x-ndjson). La respuesta es
+    // NDJSON y se va escribiendo mientras se procesa: errores por fila, progreso por lote y resumen.
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public void importarProductos(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType tipo = MediaType.parseMediaType(request.getContentType());
+        ImportadorProductos.Formato formato = tipo.isCompatibleWith(TEXT_CSV)
+                ? ImportadorProductos.Formato.CSV : ImportadorProductos.Formato.NDJSON;
+        Charset charset = tipo.getCharset() != null ? tipo.getCharset() : StandardCharsets.UTF_8;
+        response.setContentType(APPLICATION_NDJSON.toString());
+        OutputStream salida = response.getOutputStream();
+        importadorProductos.importar(request.getInputStream(), charset, formato, evento -> {
+            try {
+                salida.write(objectMapper.writeValueAsBytes(evento));
+                salida.write('\n');
+                if (!"error".equals(evento.tipo())) {
+                    salida.flush();
+                }
+            } catch (IOException e) {
+                // Cliente desconectado: se corta la importación (los lotes ya guardados se quedan)
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @PostMapping
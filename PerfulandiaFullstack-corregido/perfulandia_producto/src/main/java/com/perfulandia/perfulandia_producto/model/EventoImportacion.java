@@ -0,0 +1,22 @@
+package com.perfulandia.perfulandia_producto.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Una línea de la respuesta NDJSON de la importación:
+// "error" (fila rechazada), "progreso" (tras cada lote confirmado) o "resumen" (al terminar)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EventoImportacion(String tipo, Long linea, String mensaje,
+                                Long filas, Long importadas, Long rechazadas) {
+
+    public static EventoImportacion error(long linea, String mensaje) {
+        return new EventoImportacion("error", linea, mensaje, null, null, null);
+    }
+
+    public static EventoImportacion progreso(long filas, long importadas, long rechazadas) {
+        return new EventoImportacion("progreso", null, null, filas, importadas, rechazadas);
+    }
+
+    public static EventoImportacion resumen(long filas, long importadas, long rechazadas) {
+        return new EventoImportacion("resumen", null, null, filas, importadas, rechazadas);
+    }
+}
@@ -0,0 +1,8 @@
+package com.perfulandia.perfulandia_producto.model;
+
+import java.util.List;
+import java.util.Map;
+
+// Una página del listado; siguiente es el cursor para pedir la próxima (null si es la última)
+public record PaginaProductos(List<Map<String, Object>> items, String siguiente) {
+}
@@ -0,0 +1,11 @@
+package com.perfulandia.perfulandia_producto.model;
+
+// Proyección para los listados: solo estas columnas en el SELECT, sin hidratar la entidad.
+// Incluye las dos columnas de orden (nombre, precio) y el id que hacen falta para el cursor.
+public interface ProductoResumen {
+    int getId();
+
+    String getNombre();
+
+    double getPrecio();
+}
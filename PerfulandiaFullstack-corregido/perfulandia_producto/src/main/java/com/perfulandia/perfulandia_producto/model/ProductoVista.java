@@ -0,0 +1,6 @@
+package com.perfulandia.perfulandia_producto.model;
+
+// Proyección con todas las columnas, para cuando se pide el stock
+public interface ProductoVista extends ProductoResumen {
+    int getStock();
+}
@@ -1,10 +1,30 @@
-
 package com.perfulandia.perfulandia_producto.repository;
 
 import com.perfulandia.perfulandia_producto.model.Producto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Integer> {
+
+    // Paginación por clave: (columna, id) estrictamente después del último de la página anterior.
+    // El orden y el tamaño van en el Pageable (página 0, sin COUNT) y tipo es la proyección.
+    <T> List<T> findAllBy(Pageable pageable, Class<T> tipo);
+
+    <T> List<T> findByIdGreaterThan(int id, Pageable pageable, Class<T> tipo);
+
+    <T> List<T> findByPrecioGreaterThanOrPrecioAndIdGreaterThan(double precio, double igual, int id,
+                                                                Pageable pageable, Class<T> tipo);
+
+    <T> List<T> findByPrecioLessThanOrPrecioAndIdLessThan(double precio, double igual, int id,
+                                                          Pageable pageable, Class<T> tipo);
+
+    <T> List<T> findByNombreGreaterThanOrNombreAndIdGreaterThan(String nombre, String igual, int id,
+                                                                Pageable pageable, Class<T> tipo);
+
+    <T> List<T> findByNombreLessThanOrNombreAndIdLessThan(String nombre, String igual, int id,
+                                                          Pageable pageable, Class<T> tipo);
 }
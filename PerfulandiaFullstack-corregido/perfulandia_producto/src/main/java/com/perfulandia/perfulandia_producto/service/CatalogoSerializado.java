@@ -0,0 +1,127 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.perfulandia_producto.model.Producto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// Catálogo ya serializado a JSON (plano y gzip) con su ETag. Solo se reconstruye cuando cambia la
+// foto del catálogo cacheada en ProductoService (otra instancia de la lista tras una invalidación).
+// El ETag es un hash del contenido, así que todas las réplicas dan el mismo para el mismo catálogo.
+// La variante gzip lleva su propio ETag fuerte ("<hash>-gz"): son bytes distintos.
+@Component
+public class CatalogoSerializado {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Version actual;
+
+    public Version obtener() {
+        List<Producto> catalogo = productoService.listarProductos();
+        Version version = actual;
+        if (version != null && version.origen() == catalogo) {
+            return version;
+        }
+        synchronized (this) {
+            version = actual;
+            if (version == null || version.origen() != catalogo) {
+                version = construir(catalogo);
+                actual = version;
+            }
+            return version;
+        }
+    }
+
+    private Version construir(List<Producto> catalogo) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(catalogo);
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+                gzip.write(json);
+            }
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            String etag = "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+            return new Version(catalogo, etag, json, comprimido.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el catálogo", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ¿Alguna de las etiquetas de If-None-Match coincide con cualquiera de las dos variantes?
+    // (comparación débil, como pide RFC 9110 para GET). Vale la de la otra variante: el contenido es el mismo
+    public static boolean coincide(String ifNoneMatch, Version version) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(version.etag()) || valor.equals(version.etagGzip())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Accept-Encoding con pesos: gzip (o x-gzip) con q > 0, o sin mencionar y "*" con q > 0.
+    // "gzip;q=0" lo rechaza explícitamente
+    public static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double comodin = null;
+        for (String parte : acceptEncoding.split(",")) {
+            String[] elementos = parte.split(";");
+            String codificacion = elementos[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < elementos.length; i++) {
+                String parametro = elementos[i].trim();
+                if (parametro.length() > 2 && (parametro.charAt(0) == 'q' || parametro.charAt(0) == 'Q')
+                        && parametro.charAt(1) == '=') {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (codificacion.equals("gzip") || codificacion.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (codificacion.equals("*")) {
+                comodin = q;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return comodin != null && comodin > 0;
+    }
+
+    public record Version(List<Producto> origen, String etag, byte[] json, byte[] gzip) {
+        public String etagGzip() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+    }
+}
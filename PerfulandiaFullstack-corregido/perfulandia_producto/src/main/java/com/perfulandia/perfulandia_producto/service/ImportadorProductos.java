@@ -0,0 +1,295 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfulandia.perfulandia_producto.model.EventoImportacion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+// Importación masiva de productos desde CSV (con cabecera) o NDJSON, leyendo la entrada línea a
+// línea sin cargarla entera. Las filas válidas se acumulan en lotes de tamano-lote y cada lote se
+// guarda en su propia transacción con un único batch JDBC: con id se inserta o actualiza ese
+// producto, sin id se crea uno nuevo. Si el batch de un lote falla, el lote se reintenta fila a fila
+// y solo se rechazan las filas que fallan.
+@Service
+public class ImportadorProductos {
+    // Alias de fila (MySQL 8.0.19+) en lugar de VALUES(col), que está obsoleto
+    private static final String SQL_UPSERT = "INSERT INTO productos (id, nombre, stock, precio) VALUES (?, ?, ?, ?) AS nuevo "
+            + "ON DUPLICATE KEY UPDATE nombre = nuevo.nombre, stock = nuevo.stock, precio = nuevo.precio";
+    private static final int MAX_NOMBRE = 255;
+
+    public enum Formato { CSV, NDJSON }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${producto.import.tamano-lote:1000}")
+    private int tamanoLote;
+
+    // Solo se informan las primeras; el resumen cuenta todas
+    @Value("${producto.import.max-errores:1000}")
+    private int maxErrores;
+
+    // Los eventos se entregan a informe según avanza la lectura: un "error" por fila rechazada,
+    // un "progreso" tras cada lote confirmado y un "resumen" al final
+    public void importar(InputStream entrada, Charset charset, Formato formato,
+                         Consumer<EventoImportacion> informe) throws IOException {
+        Importacion importacion = new Importacion(informe);
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, charset));
+        List<Fila> lote = new ArrayList<>(tamanoLote);
+        Cabecera cabecera = null;
+        long numero = 0;
+        try {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                if (numero == 1 && linea.startsWith("\uFEFF")) {
+                    linea = linea.substring(1);
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+                if (formato == Formato.CSV && cabecera == null) {
+                    try {
+                        cabecera = Cabecera.leer(linea);
+                    } catch (FilaInvalida e) {
+                        informe.accept(EventoImportacion.error(numero, e.getMessage()));
+                        break;
+                    }
+                    continue;
+                }
+                importacion.filas++;
+                try {
+                    lote.add(formato == Formato.CSV ? filaCsv(cabecera, linea, numero) : filaJson(linea, numero));
+                } catch (FilaInvalida e) {
+                    importacion.rechazar(numero, e.getMessage());
+                }
+                if (lote.size() == tamanoLote) {
+                    guardar(lote, importacion);
+                }
+            }
+            if (!lote.isEmpty()) {
+                guardar(lote, importacion);
+            }
+        } finally {
+            // Una sola invalidación (y reindexado) para toda la importación, aunque se corte a medias
+            if (importacion.importadas > 0) {
+                productoService.invalidarTodo();
+            }
+        }
+        System.out.println("Importación de productos: " + importacion.filas + " filas, "
+                + importacion.importadas + " importadas, " + importacion.rechazadas + " rechazadas");
+        informe.accept(EventoImportacion.resumen(importacion.filas, importacion.importadas, importacion.rechazadas));
+    }
+
+    private void guardar(List<Fila> lote, Importacion importacion) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_UPSERT, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    asignar(ps, lote.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return lote.size();
+                }
+            }));
+            importacion.importadas += lote.size();
+        } catch (DataAccessException e) {
+            // El lote se deshizo entero: se repite fila a fila (cada una con su propio commit) para
+            // guardar las buenas e informar solo de las que fallan
+            System.out.println("Lote de las líneas " + lote.get(0).linea() + " a " + lote.get(lote.size() - 1).linea()
+                    + " fallido, se reintenta fila a fila: " + e.getMostSpecificCause().getMessage());
+            for (Fila fila : lote) {
+                try {
+                    jdbcTemplate.update(SQL_UPSERT, ps -> asignar(ps, fila));
+                    importacion.importadas++;
+                } catch (DataAccessException errorFila) {
+                    importacion.rechazar(fila.linea(), errorFila.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        lote.clear();
+        importacion.informe.accept(EventoImportacion.progreso(importacion.filas, importacion.importadas, importacion.rechazadas));
+    }
+
+    private static void asignar(PreparedStatement ps, Fila fila) throws SQLException {
+        if (fila.id() != null) {
+            ps.setInt(1, fila.id());
+        } else {
+            ps.setNull(1, Types.INTEGER);
+        }
+        ps.setString(2, fila.nombre());
+        ps.setInt(3, fila.stock());
+        ps.setDouble(4, fila.precio());
+    }
+
+    static Fila filaCsv(Cabecera cabecera, String linea, long numero) {
+        List<String> valores = separar(linea, cabecera.separador());
+        if (valores.size() != cabecera.columnas()) {
+            throw new FilaInvalida("Se esperaban " + cabecera.columnas() + " columnas y hay " + valores.size());
+        }
+        // Con ';' el decimal suele venir con coma (listas exportadas desde Excel en español)
+        String precio = valores.get(cabecera.precio()).trim();
+        if (cabecera.separador() == ';') {
+            precio = precio.replace(',', '.');
+        }
+        String id = cabecera.id() >= 0 ? valores.get(cabecera.id()).trim() : "";
+        try {
+            return validar(id.isEmpty() ? null : Integer.valueOf(id), valores.get(cabecera.nombre()).trim(),
+                    Integer.parseInt(valores.get(cabecera.stock()).trim()), Double.parseDouble(precio), numero);
+        } catch (NumberFormatException e) {
+            throw new FilaInvalida("Número no válido: " + e.getMessage());
+        }
+    }
+
+    private Fila filaJson(String linea, long numero) {
+        JsonNode nodo;
+        try {
+            nodo = objectMapper.readTree(linea);
+        } catch (JsonProcessingException e) {
+            throw new FilaInvalida("JSON no válido: " + e.getOriginalMessage());
+        }
+        if (!nodo.isObject()) {
+            throw new FilaInvalida("Se esperaba un objeto JSON");
+        }
+        JsonNode id = nodo.path("id");
+        JsonNode nombre = nodo.path("nombre");
+        JsonNode stock = nodo.path("stock");
+        JsonNode precio = nodo.path("precio");
+        if (!id.isMissingNode() && !id.isNull() && (!id.isIntegralNumber() || !id.canConvertToInt())) {
+            throw new FilaInvalida("id debe ser un entero");
+        }
+        if (!nombre.isTextual()) {
+            throw new FilaInvalida("nombre es obligatorio");
+        }
+        if (!stock.isIntegralNumber() || !stock.canConvertToInt()) {
+            throw new FilaInvalida("stock debe ser un entero");
+        }
+        if (!precio.isNumber()) {
+            throw new FilaInvalida("precio debe ser un número");
+        }
+        return validar(id.isIntegralNumber() ? id.intValue() : null, nombre.asText().trim(),
+                stock.intValue(), precio.doubleValue(), numero);
+    }
+
+    private static Fila validar(Integer id, String nombre, int stock, double precio, long numero) {
+        if (id != null && id <= 0) {
+            throw new FilaInvalida("id debe ser positivo");
+        }
+        if (nombre.isEmpty() || nombre.length() > MAX_NOMBRE) {
+            throw new FilaInvalida("nombre debe tener entre 1 y " + MAX_NOMBRE + " caracteres");
+        }
+        if (stock < 0) {
+            throw new FilaInvalida("stock no puede ser negativo");
+        }
+        if (!Double.isFinite(precio) || precio < 0) {
+            throw new FilaInvalida("precio debe ser un número no negativo");
+        }
+        return new Fila(id, nombre, stock, precio, numero);
+    }
+
+    // Separa una línea CSV respetando comillas ("" dentro de un campo entre comillas es una comilla)
+    static List<String> separar(String linea, char separador) {
+        List<String> valores = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                valores.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new FilaInvalida("Comillas sin cerrar");
+        }
+        valores.add(actual.toString());
+        return valores;
+    }
+
+    record Fila(Integer id, String nombre, int stock, double precio, long linea) {
+    }
+
+    // Posición de cada columna; id es opcional (-1)
+    record Cabecera(char separador, int columnas, int id, int nombre, int stock, int precio) {
+        static Cabecera leer(String linea) {
+            char separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+            List<String> nombres = separar(linea, separador);
+            List<String> columnas = new ArrayList<>(nombres.size());
+            for (String nombre : nombres) {
+                columnas.add(nombre.trim().toLowerCase(Locale.ROOT));
+            }
+            if (!columnas.contains("nombre") || !columnas.contains("stock") || !columnas.contains("precio")) {
+                throw new FilaInvalida("La cabecera debe tener las columnas nombre, stock y precio (id es opcional)");
+            }
+            return new Cabecera(separador, columnas.size(), columnas.indexOf("id"), columnas.indexOf("nombre"),
+                    columnas.indexOf("stock"), columnas.indexOf("precio"));
+        }
+    }
+
+    private final class Importacion {
+        private final Consumer<EventoImportacion> informe;
+        private long filas;
+        private long importadas;
+        private long rechazadas;
+
+        private Importacion(Consumer<EventoImportacion> informe) {
+            this.informe = informe;
+        }
+
+        private void rechazar(long linea, String mensaje) {
+            if (rechazadas++ < maxErrores) {
+                informe.accept(EventoImportacion.error(linea, mensaje));
+            }
+        }
+    }
+
+    static final class FilaInvalida extends RuntimeException {
+        private FilaInvalida(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import com.perfulandia.perfulandia_producto.model.Producto;
+import com.perfulandia.perfulandia_producto.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Índice en memoria para la búsqueda de productos. Sobre el nombre (sin tildes y en minúsculas)
+// guarda, por cada palabra, sus prefijos de 1 y 2 letras ("^r", "^ro") y todos sus trigramas;
+// cada gramo apunta a una lista ordenada de ids. El precio va en un árbol ordenado por (precio, id):
+// un rango sale con subSet y cambiar un producto cuesta O(log n). Se actualiza producto a
+// producto desde ProductoService.invalidarLocal, también con los avisos de otras réplicas, y se
+// reconstruye entero cada producto.cache.ttl-seconds por si se perdió alguno de esos avisos.
+@Component
+public class IndiceProductos {
+    public static final Set<String> ORDENES = Set.of("precio", "-precio", "nombre", "-nombre");
+
+    private static final Comparator<Entrada> POR_NOMBRE = Comparator.comparing(Entrada::normalizado)
+            .thenComparingInt(Entrada::id);
+    private static final Comparator<Entrada> POR_PRECIO = Comparator.comparingDouble(Entrada::precio)
+            .thenComparingInt(Entrada::id);
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializa lectura de la BD + aplicación: sin él, una lectura anterior aplicada después
+    // pisaría a una más reciente. Las búsquedas solo esperan al cambio en memoria, no a la BD
+    private final ReentrantLock escritura = new ReentrantLock();
+    private Map<Integer, Entrada> entradas = new HashMap<>();
+    private Map<String, ListaIds> gramos = new HashMap<>();
+    private NavigableSet<Entrada> porPrecio = new TreeSet<>(POR_PRECIO);
+
+    @PostConstruct
+    public void iniciar() {
+        cargar();
+    }
+
+    // Reconstruye el índice desde la tabla y lo cambia de una vez por el actual
+    public void cargar() {
+        escritura.lock();
+        try {
+            List<Producto> productos = productoRepository.findAll();
+            Map<Integer, Entrada> nuevasEntradas = new HashMap<>(productos.size() * 2);
+            Map<String, ListaIds> nuevosGramos = new HashMap<>();
+            NavigableSet<Entrada> nuevoPorPrecio = new TreeSet<>(POR_PRECIO);
+            for (Producto producto : productos) {
+                Entrada entrada = Entrada.de(producto);
+                nuevasEntradas.put(entrada.id(), entrada);
+                nuevoPorPrecio.add(entrada);
+                for (String gramo : gramos(entrada.normalizado())) {
+                    nuevosGramos.computeIfAbsent(gramo, g -> new ListaIds()).agregar(entrada.id());
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                entradas = nuevasEntradas;
+                gramos = nuevosGramos;
+                porPrecio = nuevoPorPrecio;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("Índice de búsqueda cargado con " + productos.size() + " productos");
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    // Vuelve a leer el producto y reemplaza (o quita) su entrada
+    public void actualizar(int id) {
+        escritura.lock();
+        try {
+            Producto producto = productoRepository.findById(id).orElse(null);
+            lock.writeLock().lock();
+            try {
+                Entrada anterior = entradas.remove(id);
+                if (anterior != null) {
+                    quitar(anterior);
+                }
+                if (producto != null) {
+                    Entrada nueva = Entrada.de(producto);
+                    entradas.put(id, nueva);
+                    poner(nueva);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${producto.cache.ttl-seconds:300}",
+            fixedDelayString = "${producto.cache.ttl-seconds:300}", timeUnit = TimeUnit.SECONDS)
+    public void cargarSeguro() {
+        try {
+            cargar();
+        } catch (RuntimeException e) {
+            System.out.println("Error reconstruyendo el índice de búsqueda: " + e.getMessage());
+        }
+    }
+
+    // q filtra por nombre (todas las palabras deben aparecer); min/max por precio, ambos inclusive.
+    // Sin orden explícito: con q, primero los nombres que empiezan por la búsqueda; sin q, por precio.
+    public List<Producto> buscar(String q, Double minPrecio, Double maxPrecio, String orden, int limite) {
+        String[] terminos = palabras(normalizar(q != null ? q : ""));
+        double min = minPrecio != null ? minPrecio : Double.NEGATIVE_INFINITY;
+        double max = maxPrecio != null ? maxPrecio : Double.POSITIVE_INFINITY;
+        List<Entrada> encontradas = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (terminos.length == 0) {
+                // Un rango vacío (o con NaN) no tiene productos; subSet fallaría con desde > hasta
+                if (min <= max) {
+                    encontradas.addAll(porPrecio.subSet(Entrada.limite(min, Integer.MIN_VALUE), true,
+                            Entrada.limite(max, Integer.MAX_VALUE), true));
+                }
+            } else {
+                for (int id : candidatos(terminos)) {
+                    Entrada entrada = entradas.get(id);
+                    if (entrada.precio() >= min && entrada.precio() <= max && contieneTodos(entrada, terminos)) {
+                        encontradas.add(entrada);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Comparator<Entrada> comparador = switch (orden != null ? orden : "") {
+            case "precio" -> POR_PRECIO;
+            case "-precio" -> Comparator.comparingDouble(Entrada::precio).reversed().thenComparingInt(Entrada::id);
+            case "nombre" -> POR_NOMBRE;
+            case "-nombre" -> POR_NOMBRE.reversed();
+            default -> null;
+        };
+        if (comparador == null && terminos.length > 0) {
+            String busqueda = String.join(" ", terminos);
+            comparador = Comparator.comparing((Entrada e) -> !e.normalizado().startsWith(busqueda)).thenComparing(POR_NOMBRE);
+        }
+        // Sin q y sin orden ya vienen ordenadas por precio
+        if (comparador != null) {
+            encontradas.sort(comparador);
+        }
+
+        List<Producto> resultado = new ArrayList<>(Math.min(limite, encontradas.size()));
+        for (int i = 0; i < encontradas.size() && i < limite; i++) {
+            resultado.add(encontradas.get(i).producto());
+        }
+        return resultado;
+    }
+
+    // Ids que tienen todos los gramos de la búsqueda: se recorre la lista más corta y se comprueba
+    // el resto por búsqueda binaria
+    private int[] candidatos(String[] terminos) {
+        List<ListaIds> listas = new ArrayList<>();
+        for (String termino : terminos) {
+            for (String gramo : gramosConsulta(termino)) {
+                ListaIds lista = gramos.get(gramo);
+                if (lista == null) {
+                    return new int[0];
+                }
+                listas.add(lista);
+            }
+        }
+        listas.sort(Comparator.comparingInt(ListaIds::tamano));
+        ListaIds menor = listas.get(0);
+        int[] resultado = new int[menor.tamano()];
+        int n = 0;
+        for (int i = 0; i < menor.tamano(); i++) {
+            int id = menor.ids[i];
+            boolean enTodas = true;
+            for (int j = 1; j < listas.size() && enTodas; j++) {
+                enTodas = listas.get(j).contiene(id);
+            }
+            if (enTodas) {
+                resultado[n++] = id;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    // Los trigramas no garantizan que estén contiguos: se confirma sobre el nombre
+    private static boolean contieneTodos(Entrada entrada, String[] terminos) {
+        for (String termino : terminos) {
+            if (termino.length() >= 3 && !entrada.normalizado().contains(termino)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void poner(Entrada entrada) {
+        for (String gramo : gramos(entrada.normalizado())) {
+            gramos.computeIfAbsent(gramo, g -> new ListaIds()).agregar(entrada.id());
+        }
+        porPrecio.add(entrada);
+    }
+
+    private void quitar(Entrada entrada) {
+        for (String gramo : gramos(entrada.normalizado())) {
+            ListaIds lista = gramos.get(gramo);
+            if (lista != null && lista.quitar(entrada.id()) && lista.tamano() == 0) {
+                gramos.remove(gramo);
+            }
+        }
+        porPrecio.remove(entrada);
+    }
+
+    private static Set<String> gramos(String normalizado) {
+        Set<String> resultado = new LinkedHashSet<>();
+        for (String palabra : palabras(normalizado)) {
+            resultado.add("^" + palabra.substring(0, 1));
+            if (palabra.length() >= 2) {
+                resultado.add("^" + palabra.substring(0, 2));
+            }
+            for (int i = 0; i + 3 <= palabra.length(); i++) {
+                resultado.add(palabra.substring(i, i + 3));
+            }
+        }
+        return resultado;
+    }
+
+    // Término de 1-2 letras: prefijo de palabra; más largo: subcadena, vía sus trigramas
+    private static List<String> gramosConsulta(String termino) {
+        if (termino.length() < 3) {
+            return List.of("^" + termino);
+        }
+        List<String> resultado = new ArrayList<>(termino.length() - 2);
+        for (int i = 0; i + 3 <= termino.length(); i++) {
+            resultado.add(termino.substring(i, i + 3));
+        }
+        return resultado;
+    }
+
+    private static String[] palabras(String normalizado) {
+        String recortado = normalizado.trim();
+        return recortado.isEmpty() ? new String[0] : recortado.split(" +");
+    }
+
+    // Sin tildes, minúsculas y solo letras y dígitos separados por un espacio
+    static String normalizar(String texto) {
+        String sinTildes = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private record Entrada(int id, String nombre, String normalizado, int stock, double precio) {
+        static Entrada de(Producto producto) {
+            String nombre = producto.getNombre() != null ? producto.getNombre() : "";
+            return new Entrada(producto.getId(), nombre, normalizar(nombre), producto.getStock(), producto.getPrecio());
+        }
+
+        // Cota para los rangos de precio: id extremo para que el rango incluya todo ese precio
+        static Entrada limite(double precio, int id) {
+            return new Entrada(id, "", "", 0, precio);
+        }
+
+        Producto producto() {
+            return new Producto(id, nombre, stock, precio);
+        }
+    }
+
+    // Ids ordenados en un int[] que crece por duplicación
+    private static final class ListaIds {
+        private int[] ids = new int[4];
+        private int tamano;
+
+        int tamano() {
+            return tamano;
+        }
+
+        boolean contiene(int id) {
+            return Arrays.binarySearch(ids, 0, tamano, id) >= 0;
+        }
+
+        void agregar(int id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion >= 0) {
+                return;
+            }
+            posicion = -(posicion + 1);
+            if (tamano == ids.length) {
+                ids = Arrays.copyOf(ids, tamano * 2);
+            }
+            System.arraycopy(ids, posicion, ids, posicion + 1, tamano - posicion);
+            ids[posicion] = id;
+            tamano++;
+        }
+
+        boolean quitar(int id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicion + 1, ids, posicion, tamano - posicion - 1);
+            tamano--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class InvalidacionListener {
+
+    @Autowired
+    private ProductoService productoService;
+
+    // Aviso de otra réplica: el cuerpo es el id del producto modificado, o ProductoService.TODOS tras
+    // una importación. Los de esta misma réplica (appId = su cola) ya se aplicaron al enviarlos
+    @RabbitListener(queues = "#{invalidacionQueue.name}")
+    public void recibirInvalidacion(String productoId,
+                                    @Header(name = AmqpHeaders.APP_ID, required = false) String origen) {
+        if (productoService.esAvisoPropio(origen)) {
+            return;
+        }
+        if (ProductoService.TODOS.equals(productoId.trim())) {
+            productoService.invalidarTodoLocal();
+            return;
+        }
+        try {
+            productoService.invalidarLocal(Integer.parseInt(productoId.trim()));
+        } catch (NumberFormatException e) {
+            System.out.println("Aviso de invalidación descartado: " + productoId);
+        }
+    }
+}
@@ -1,29 +1,132 @@
-
 package com.perfulandia.perfulandia_producto.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.perfulandia.perfulandia_producto.config.RabbitMQConfig;
+import com.perfulandia.perfulandia_producto.model.PaginaProductos;
 import com.perfulandia.perfulandia_producto.model.Producto;
+import com.perfulandia.perfulandia_producto.model.ProductoResumen;
+import com.perfulandia.perfulandia_producto.model.ProductoVista;
 import com.perfulandia.perfulandia_producto.repository.ProductoRepository;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ProductoService {
+    private static final String CATALOGO = "catalogo";
+    public static final Set<String> ORDENES_PAGINA = Set.of("id", "precio", "-precio", "nombre", "-nombre");
+    public static final Set<String> CAMPOS = Set.of("id", "nombre", "stock", "precio");
+    // Aviso por el fanout que invalida todos los productos (importaciones masivas)
+    public static final String TODOS = "*";
 
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private Cache<Integer, Producto> productoCache;
+
+    @Autowired
+    private Cache<String, List<Producto>> catalogoCache;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private IndiceProductos indiceProductos;
+
+    @Autowired
+    private Queue invalidacionQueue;
+
+    // Foto inmutable del catálogo; una sola carga aunque lleguen muchas peticiones a la vez
     public List<Producto> listarProductos() {
-        return productoRepository.findAll();
+        return catalogoCache.get(CATALOGO, k -> List.copyOf(productoRepository.findAll()));
+    }
+
+    // Página por clave ordenada por orden (ver ORDENES_PAGINA). despues es el cursor devuelto en la
+    // página anterior (null en la primera); campos, las columnas a devolver. Si no se pide el stock
+    // la consulta solo lee id, nombre y precio. Un cursor mal formado lanza IllegalArgumentException.
+    public PaginaProductos listarPagina(String orden, String despues, int limite, Set<String> campos) {
+        boolean descendente = orden.startsWith("-");
+        String columna = descendente ? orden.substring(1) : orden;
+        Sort.Direction direccion = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Pageable pagina = PageRequest.of(0, limite, columna.equals("id")
+                ? Sort.by(direccion, "id") : Sort.by(direccion, columna).and(Sort.by(direccion, "id")));
+        Class<? extends ProductoResumen> tipo = campos.contains("stock") ? ProductoVista.class : ProductoResumen.class;
+
+        List<? extends ProductoResumen> filas;
+        if (despues == null) {
+            filas = productoRepository.findAllBy(pagina, tipo);
+        } else {
+            String[] cursor = leerCursor(despues);
+            int id = Integer.parseInt(cursor[0]);
+            filas = switch (orden) {
+                case "precio" -> productoRepository.findByPrecioGreaterThanOrPrecioAndIdGreaterThan(
+                        Double.parseDouble(cursor[1]), Double.parseDouble(cursor[1]), id, pagina, tipo);
+                case "-precio" -> productoRepository.findByPrecioLessThanOrPrecioAndIdLessThan(
+                        Double.parseDouble(cursor[1]), Double.parseDouble(cursor[1]), id, pagina, tipo);
+                case "nombre" -> productoRepository.findByNombreGreaterThanOrNombreAndIdGreaterThan(
+                        cursor[1], cursor[1], id, pagina, tipo);
+                case "-nombre" -> productoRepository.findByNombreLessThanOrNombreAndIdLessThan(
+                        cursor[1], cursor[1], id, pagina, tipo);
+                default -> productoRepository.findByIdGreaterThan(id, pagina, tipo);
+            };
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>(filas.size());
+        for (ProductoResumen fila : filas) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            if (campos.contains("id")) {
+                item.put("id", fila.getId());
+            }
+            if (campos.contains("nombre")) {
+                item.put("nombre", fila.getNombre());
+            }
+            if (campos.contains("stock")) {
+                item.put("stock", ((ProductoVista) fila).getStock());
+            }
+            if (campos.contains("precio")) {
+                item.put("precio", fila.getPrecio());
+            }
+            items.add(item);
+        }
+        // Página incompleta: no hay más
+        String siguiente = null;
+        if (filas.size() == limite) {
+            ProductoResumen ultima = filas.get(filas.size() - 1);
+            String valor = switch (columna) {
+                case "precio" -> Double.toString(ultima.getPrecio());
+                case "nombre" -> ultima.getNombre();
+                default -> "";
+            };
+            siguiente = escribirCursor(ultima.getId(), valor);
+        }
+        return new PaginaProductos(items, siguiente);
     }
 
     public Producto crearProducto(Producto producto) {
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        invalidar(guardado.getId());
+        return guardado;
     }
 
+    // Devuelve una copia: quien la modifique (PATCH) no altera la entrada cacheada
     public Producto buscarProducto(int id) {
-        return productoRepository.findById(id).orElse(null);
+        Producto producto = productoCache.get(id, k -> productoRepository.findById(k).orElse(null));
+        return producto != null ? copiar(producto) : null;
     }
 
     public Producto actualizarProducto(int id, Producto producto) {
@@ -32,12 +135,82 @@ public class ProductoService {
             existente.setNombre(producto.getNombre());
             existente.setStock(producto.getStock());
             existente.setPrecio(producto.getPrecio());
-            return productoRepository.save(existente);
+            Producto guardado = productoRepository.save(existente);
+            invalidar(id);
+            return guardado;
         }
         return null;
     }
 
     public void eliminarProducto(int id) {
         productoRepository.deleteById(id);
+        invalidar(id);
+    }
+
+    public List<Producto> buscarProductos(String q, Double minPrecio, Double maxPrecio, String orden, int limite) {
+        return indiceProductos.buscar(q, minPrecio, maxPrecio, orden, limite);
+    }
+
+    public void invalidarLocal(int id) {
+        productoCache.invalidate(id);
+        catalogoCache.invalidate(CATALOGO);
+        indiceProductos.actualizar(id);
+    }
+
+    public void invalidarTodoLocal() {
+        productoCache.invalidateAll();
+        catalogoCache.invalidateAll();
+        indiceProductos.cargar();
+    }
+
+    // Tras cambios masivos: un único aviso en lugar de uno por producto
+    public void invalidarTodo() {
+        invalidarTodoLocal();
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.INVALIDACION_EXCHANGE, "", TODOS, this::conOrigen);
+        } catch (AmqpException e) {
+            System.out.println("No se pudo difundir la invalidación de todos los productos: " + e.getMessage());
+        }
+    }
+
+    // Invalida (y reindexa) en esta réplica y avisa al resto por el fanout. Si RabbitMQ no está disponible
+    // o el aviso se pierde, las otras réplicas se corrigen al caducar sus entradas de caché y con la
+    // reconstrucción periódica del índice de búsqueda (ambas cada producto.cache.ttl-seconds)
+    private void invalidar(int id) {
+        invalidarLocal(id);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.INVALIDACION_EXCHANGE, "", String.valueOf(id), this::conOrigen);
+        } catch (AmqpException e) {
+            System.out.println("No se pudo difundir la invalidación del producto " + id + ": " + e.getMessage());
+        }
+    }
+
+    // Esta réplica ya aplicó el aviso antes de enviarlo: su eco por el fanout se ignora
+    public boolean esAvisoPropio(String origen) {
+        return invalidacionQueue.getName().equals(origen);
+    }
+
+    private Message conOrigen(Message mensaje) {
+        mensaje.getMessageProperties().setAppId(invalidacionQueue.getName());
+        return mensaje;
+    }
+
+    // Cursor opaco: "id:valor de la columna de orden" en base64 para URL
+    private static String escribirCursor(int id, String valor) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + valor).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] leerCursor(String cursor) {
+        String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] partes = texto.split(":", 2);
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+        return partes;
+    }
+
+    private static Producto copiar(Producto producto) {
+        return new Producto(producto.getId(), producto.getNombre(), producto.getStock(), producto.getPrecio());
     }
 }
@@ -0,0 +1,8 @@
+-- Tabla tal como la creaba hibernate (ddl-auto=update); en una base existente no hace nada
+CREATE TABLE IF NOT EXISTS productos (
+    id INT NOT NULL AUTO_INCREMENT,
+    nombre VARCHAR(255) NOT NULL,
+    stock INT NOT NULL,
+    precio DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
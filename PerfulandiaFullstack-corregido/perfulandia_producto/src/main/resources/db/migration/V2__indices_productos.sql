@@ -0,0 +1,3 @@
+-- Índices para la paginación por clave: (columna de orden, id) como desempate
+CREATE INDEX idx_productos_precio_id ON productos (precio, id);
+CREATE INDEX idx_productos_nombre_id ON productos (nombre, id);
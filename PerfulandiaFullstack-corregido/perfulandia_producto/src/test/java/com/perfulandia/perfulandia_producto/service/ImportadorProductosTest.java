@@ -0,0 +1,112 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import com.perfulandia.perfulandia_producto.model.EventoImportacion;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportadorProductosTest {
+
+    @Test
+    void separarRespetaComillas() {
+        assertEquals(List.of("1", "Rosa, Eterna", "5", "10.5"),
+                ImportadorProductos.separar("1,\"Rosa, Eterna\",5,10.5", ','));
+        assertEquals(List.of("Dijo \"hola\"", "2"), ImportadorProductos.separar("\"Dijo \"\"hola\"\"\",2", ','));
+        assertEquals(List.of("a", "", "b", ""), ImportadorProductos.separar("a,,b,", ','));
+        assertEquals(List.of("Rosa", "10,5"), ImportadorProductos.separar("Rosa;10,5", ';'));
+    }
+
+    @Test
+    void comillasSinCerrar() {
+        ImportadorProductos.FilaInvalida error = assertThrows(ImportadorProductos.FilaInvalida.class,
+                () -> ImportadorProductos.separar("\"Rosa,5,10", ','));
+        assertEquals("Comillas sin cerrar", error.getMessage());
+    }
+
+    @Test
+    void cabeceraEligeSeparadorYColumnas() {
+        ImportadorProductos.Cabecera puntoYComa = ImportadorProductos.Cabecera.leer("ID; Nombre ;stock;precio");
+        assertEquals(';', puntoYComa.separador());
+        assertEquals(4, puntoYComa.columnas());
+        assertEquals(0, puntoYComa.id());
+        assertEquals(1, puntoYComa.nombre());
+        assertEquals(2, puntoYComa.stock());
+        assertEquals(3, puntoYComa.precio());
+
+        // Sin id y en otro orden
+        ImportadorProductos.Cabecera coma = ImportadorProductos.Cabecera.leer("nombre,precio,stock");
+        assertEquals(',', coma.separador());
+        assertEquals(-1, coma.id());
+        assertEquals(1, coma.precio());
+        assertEquals(2, coma.stock());
+    }
+
+    @Test
+    void cabeceraSinColumnaObligatoria() {
+        assertThrows(ImportadorProductos.FilaInvalida.class, () -> ImportadorProductos.Cabecera.leer("nombre;stock"));
+        assertThrows(ImportadorProductos.FilaInvalida.class, () -> ImportadorProductos.Cabecera.leer("id,nombre,existencias,precio"));
+    }
+
+    @Test
+    void puntoYComaConDecimalConComa() {
+        ImportadorProductos.Cabecera cabecera = ImportadorProductos.Cabecera.leer("nombre;stock;precio");
+        ImportadorProductos.Fila fila = ImportadorProductos.filaCsv(cabecera, "\"Rosa; Eterna\"; 5 ;10,50", 7);
+        assertNull(fila.id());
+        assertEquals("Rosa; Eterna", fila.nombre());
+        assertEquals(5, fila.stock());
+        assertEquals(10.5, fila.precio());
+        assertEquals(7, fila.linea());
+    }
+
+    @Test
+    void comaConDecimalConPunto() {
+        ImportadorProductos.Cabecera cabecera = ImportadorProductos.Cabecera.leer("id,nombre,stock,precio");
+        ImportadorProductos.Fila fila = ImportadorProductos.filaCsv(cabecera, "3,\"Ámbar, 50ml\",2,10.5", 2);
+        assertEquals(Integer.valueOf(3), fila.id());
+        assertEquals("Ámbar, 50ml", fila.nombre());
+        assertEquals(10.5, fila.precio());
+
+        // Con ',' de separador la coma decimal no se convierte
+        assertThrows(ImportadorProductos.FilaInvalida.class,
+                () -> ImportadorProductos.filaCsv(cabecera, "3,Ámbar,2,\"10,5\"", 2));
+    }
+
+    @Test
+    void numeroDeColumnasDistinto() {
+        ImportadorProductos.Cabecera cabecera = ImportadorProductos.Cabecera.leer("nombre;stock;precio");
+        ImportadorProductos.FilaInvalida error = assertThrows(ImportadorProductos.FilaInvalida.class,
+                () -> ImportadorProductos.filaCsv(cabecera, "Rosa;5;10,5;x", 3));
+        assertEquals("Se esperaban 3 columnas y hay 4", error.getMessage());
+    }
+
+    // Con el BOM la cabecera se lee bien y los errores son de fila. Todas las filas son inválidas,
+    // así que no se llega a la base de datos
+    @Test
+    void bomAlPrincipioDeLaCabecera() throws IOException {
+        ImportadorProductos importador = new ImportadorProductos();
+        ReflectionTestUtils.setField(importador, "tamanoLote", 10);
+        ReflectionTestUtils.setField(importador, "maxErrores", 10);
+        String csv = "\uFEFFnombre;stock;precio\r\nRosa;-1;10,5\r\n\r\nCedro;2;abc\r\n";
+        List<EventoImportacion> eventos = new ArrayList<>();
+
+        importador.importar(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                ImportadorProductos.Formato.CSV, eventos::add);
+
+        assertEquals(3, eventos.size());
+        assertEquals(EventoImportacion.error(2, "stock no puede ser negativo"), eventos.get(0));
+        assertEquals("error", eventos.get(1).tipo());
+        assertEquals(Long.valueOf(4), eventos.get(1).linea());
+        assertTrue(eventos.get(1).mensaje().startsWith("Número no válido"));
+        assertEquals(EventoImportacion.resumen(2, 0, 2), eventos.get(2));
+    }
+}
@@ -0,0 +1,135 @@
+package com.perfulandia.perfulandia_producto.service;
+
+import com.perfulandia.perfulandia_producto.model.Producto;
+import com.perfulandia.perfulandia_producto.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndiceProductosTest {
+    private static final int TODOS = Integer.MAX_VALUE;
+
+    // Hace de tabla productos: el índice la lee entera en cargar() y por id en actualizar()
+    private final Map<Integer, Producto> tabla = new HashMap<>();
+    private IndiceProductos indice;
+
+    @BeforeEach
+    void preparar() {
+        guardar(1, "Rosa Eterna", 10.0);
+        guardar(2, "Ámbar Noche", 5.0);
+        guardar(3, "Rosa Blanca", 10.0);
+        guardar(4, "Cítrico", 20.0);
+        indice = nuevoIndice();
+    }
+
+    @Test
+    void rangoDePrecioOrdenadoPorPrecioEId() {
+        assertEquals(List.of(2, 1, 3, 4), ids(indice.buscar(null, null, null, null, TODOS)));
+        assertEquals(List.of(1, 3), ids(indice.buscar(null, 6.0, 10.0, null, TODOS)));
+        assertEquals(List.of(4, 1, 3, 2), ids(indice.buscar(null, null, null, "-precio", TODOS)));
+        // Mínimo mayor que el máximo: vacío, sin error
+        assertEquals(List.of(), ids(indice.buscar(null, 10.0, 6.0, null, TODOS)));
+    }
+
+    @Test
+    void busquedaPorPrefijoYSubcadenaSinTildes() {
+        assertEquals(List.of(3, 1), ids(indice.buscar("rosa", null, null, null, TODOS)));
+        assertEquals(List.of(3, 1), ids(indice.buscar("ro", null, null, null, TODOS)));
+        assertEquals(List.of(3, 1), ids(indice.buscar("osa", null, null, null, TODOS)));
+        assertEquals(List.of(2), ids(indice.buscar("AMBAR", null, null, null, TODOS)));
+        assertEquals(List.of(3), ids(indice.buscar("rosa blan", null, null, null, TODOS)));
+        assertEquals(List.of(), ids(indice.buscar("rosa", 11.0, null, null, TODOS)));
+    }
+
+    @Test
+    void actualizarMueveElPrecioYLosGramos() {
+        guardar(1, "Vetiver", 30.0);
+        indice.actualizar(1);
+
+        assertEquals(List.of(3), ids(indice.buscar("rosa", null, null, null, TODOS)));
+        assertEquals(List.of(1), ids(indice.buscar("vetiver", null, null, null, TODOS)));
+        assertEquals(List.of(2, 3, 4, 1), ids(indice.buscar(null, null, null, null, TODOS)));
+        assertEquals(List.of(3), ids(indice.buscar(null, 10.0, 10.0, null, TODOS)));
+    }
+
+    @Test
+    void actualizarQuitaYAgrega() {
+        tabla.remove(2);
+        indice.actualizar(2);
+        assertEquals(List.of(1, 3, 4), ids(indice.buscar(null, null, null, null, TODOS)));
+        assertEquals(List.of(), ids(indice.buscar("ambar", null, null, null, TODOS)));
+
+        // Mismo precio que 1 y 3: va detrás por id
+        guardar(5, "Rosa Mosqueta", 10.0);
+        indice.actualizar(5);
+        assertEquals(List.of(1, 3, 5, 4), ids(indice.buscar(null, null, null, null, TODOS)));
+        assertEquals(List.of(3, 1, 5), ids(indice.buscar("rosa", null, null, null, TODOS)));
+
+        // Un id que no existe no cambia nada
+        indice.actualizar(99);
+        assertEquals(List.of(1, 3, 5, 4), ids(indice.buscar(null, null, null, null, TODOS)));
+    }
+
+    // Tras muchas altas, cambios y bajas sueltas el índice responde igual que uno recién cargado
+    @Test
+    void incrementalIgualQueRecargaCompleta() {
+        String[] palabras = {"rosa", "ambar", "cedro", "vainilla", "noche", "blanca"};
+        double[] precios = {5.0, 9.99, 10.0, 25.5};
+        Random aleatorio = new Random(7);
+        for (int paso = 0; paso < 400; paso++) {
+            int id = 1 + aleatorio.nextInt(40);
+            if (aleatorio.nextInt(5) == 0) {
+                tabla.remove(id);
+            } else {
+                String nombre = palabras[aleatorio.nextInt(palabras.length)] + " " + palabras[aleatorio.nextInt(palabras.length)];
+                guardar(id, nombre, precios[aleatorio.nextInt(precios.length)]);
+            }
+            indice.actualizar(id);
+        }
+
+        IndiceProductos recargado = nuevoIndice();
+        assertEquals(ids(recargado.buscar(null, null, null, null, TODOS)), ids(indice.buscar(null, null, null, null, TODOS)));
+        assertEquals(tabla.size(), indice.buscar(null, null, null, null, TODOS).size());
+        assertEquals(ids(recargado.buscar(null, 9.99, 10.0, null, TODOS)), ids(indice.buscar(null, 9.99, 10.0, null, TODOS)));
+        for (String palabra : palabras) {
+            for (String consulta : List.of(palabra, palabra.substring(0, 2), palabra.substring(1, 4))) {
+                assertEquals(ids(recargado.buscar(consulta, null, null, "nombre", TODOS)),
+                        ids(indice.buscar(consulta, null, null, "nombre", TODOS)), consulta);
+            }
+        }
+    }
+
+    private IndiceProductos nuevoIndice() {
+        ProductoRepository repositorio = mock(ProductoRepository.class);
+        when(repositorio.findAll()).thenAnswer(invocacion -> new ArrayList<>(tabla.values()));
+        when(repositorio.findById(anyInt())).thenAnswer(invocacion -> Optional.ofNullable(tabla.get(invocacion.<Integer>getArgument(0))));
+        IndiceProductos nuevo = new IndiceProductos();
+        ReflectionTestUtils.setField(nuevo, "productoRepository", repositorio);
+        nuevo.cargar();
+        return nuevo;
+    }
+
+    private void guardar(int id, String nombre, double precio) {
+        tabla.put(id, new Producto(id, nombre, 1, precio));
+    }
+
+    private static List<Integer> ids(List<Producto> productos) {
+        List<Integer> ids = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            ids.add(producto.getId());
+        }
+        return ids;
+    }
+}